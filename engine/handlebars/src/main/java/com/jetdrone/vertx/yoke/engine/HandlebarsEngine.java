@@ -113,6 +113,16 @@ public class HandlebarsEngine extends AbstractEngineSync<Template> {
         return location;
     }
 
+    @Override
+    protected String views() {
+        return prefix;
+    }
+
+    @Override
+    protected Template compile(String filename) throws Exception {
+        return handlebars.compile(filename);
+    }
+
     @Override
     public void render(final String filename, final Map<String, Object> context, final Handler<AsyncResult<Buffer>> next) {
         try {
@@ -120,7 +130,7 @@ public class HandlebarsEngine extends AbstractEngineSync<Template> {
 
             if (template == null) {
                 // real compile
-                template = handlebars.compile(filename);
+                template = compile(filename);
                 putTemplateToCache(resolve(filename), template);
             }
 
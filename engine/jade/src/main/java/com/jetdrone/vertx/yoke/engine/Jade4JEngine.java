@@ -80,6 +80,16 @@ public class Jade4JEngine extends AbstractEngineSync<JadeTemplate> {
         return extension;
     }
 
+    @Override
+    protected String views() {
+        return prefix;
+    }
+
+    @Override
+    protected JadeTemplate compile(String filename) throws Exception {
+        return config.getTemplate(filename);
+    }
+
     @Override
     public void render(final String filename, final Map<String, Object> context, final Handler<AsyncResult<Buffer>> next) {
         try {
@@ -87,7 +97,7 @@ public class Jade4JEngine extends AbstractEngineSync<JadeTemplate> {
 
             if (template == null) {
                 // real compile
-                template = config.getTemplate(filename);
+                template = compile(filename);
                 putTemplateToCache(resolve(filename), template);
             }
 
@@ -0,0 +1,138 @@
+package com.jetdrone.vertx.bench;
+
+import com.jetdrone.vertx.yoke.sockjs.PermittedOptions;
+import com.jetdrone.vertx.yoke.sockjs.impl.PermissionMatcher;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of the SockJS bridge permission check per message, with 500 permitted rules (exact addresses, address regexes
+ * and some structure matches) and a stream of 10k messages to allowed, regex allowed and denied addresses. The
+ * baseline is the previous linear scan of the rules with a regex cache.
+ *
+ * <pre>
+ * mvn -pl examples/microbenchmark -am package
+ * java -jar examples/microbenchmark/target/benchmarks.jar PermissionBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionBenchmark {
+
+    private static final int RULES = 500;
+    private static final int MESSAGES = 10000;
+
+    private final List<PermittedOptions> rules = new ArrayList<>();
+    private final Map<String, Pattern> compiledREs = new HashMap<>();
+    private PermissionMatcher matcher;
+
+    private final String[] addresses = new String[MESSAGES];
+    private final JsonObject[] bodies = new JsonObject[MESSAGES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < RULES; i++) {
+            if (i % 10 == 9) {
+                rules.add(new PermittedOptions().setAddressRegex("feed\\." + i + "\\.[a-z]+"));
+            } else if (i % 10 == 5) {
+                rules.add(new PermittedOptions().setAddress("service." + i).setMatch(new JsonObject().put("action", "read")));
+            } else {
+                rules.add(new PermittedOptions().setAddress("service." + i));
+            }
+        }
+
+        matcher = new PermissionMatcher(rules);
+
+        final Random random = new Random(42);
+        for (int i = 0; i < MESSAGES; i++) {
+            final int rule = random.nextInt(RULES);
+            switch (random.nextInt(4)) {
+                case 0:
+                    addresses[i] = "feed." + (rule / 10 * 10 + 9) + ".prices";
+                    break;
+                case 1:
+                    addresses[i] = "denied." + rule;
+                    break;
+                default:
+                    addresses[i] = "service." + rule;
+            }
+            bodies[i] = new JsonObject().put("action", random.nextBoolean() ? "read" : "write").put("id", i);
+        }
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        final int i = next++ % MESSAGES;
+        return checkMatches(addresses[i], bodies[i]);
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        final int i = next++ % MESSAGES;
+        return matcher.matches(addresses[i], bodies[i]);
+    }
+
+    // the previous EventBusBridgeImpl.checkMatches
+    private boolean checkMatches(String address, Object body) {
+        for (PermittedOptions matchHolder : rules) {
+            String matchAddress = matchHolder.getAddress();
+            String matchRegex = matchAddress == null ? matchHolder.getAddressRegex() : null;
+
+            boolean addressOK;
+            if (matchAddress == null) {
+                addressOK = matchRegex == null || regexMatches(matchRegex, address);
+            } else {
+                addressOK = matchAddress.equals(address);
+            }
+
+            if (addressOK) {
+                return structureMatches(matchHolder.getMatch(), body);
+            }
+        }
+        return false;
+    }
+
+    private boolean regexMatches(String matchRegex, String address) {
+        Pattern pattern = compiledREs.get(matchRegex);
+        if (pattern == null) {
+            pattern = Pattern.compile(matchRegex);
+            compiledREs.put(matchRegex, pattern);
+        }
+        return pattern.matcher(address).matches();
+    }
+
+    private static boolean structureMatches(JsonObject match, Object bodyObject) {
+        if (match == null || bodyObject == null) return true;
+
+        if (bodyObject instanceof JsonObject) {
+            JsonObject body = (JsonObject) bodyObject;
+            for (String fieldName : match.fieldNames()) {
+                Object mv = match.getValue(fieldName);
+                Object bv = body.getValue(fieldName);
+                if (mv instanceof JsonObject) {
+                    if (!structureMatches((JsonObject) mv, bv)) {
+                        return false;
+                    }
+                } else if (!mv.equals(bv)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.jetdrone.vertx.bench;
+
+import com.jetdrone.vertx.yoke.core.impl.RouteMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the prefix tree route lookup with the previous linear scan of regular expressions.
+ *
+ * The looked up path is always the last registered route, which is the worst case for the linear scan.
+ *
+ * <pre>
+ * mvn -pl examples/microbenchmark -am package
+ * java -jar examples/microbenchmark/target/benchmarks.jar RouterBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final RouteMatcher<Integer> matcher = new RouteMatcher<>();
+
+    private String path;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < routes; i++) {
+            String route = "/api/resource" + i + "/:id";
+            Pattern regex = compile(route);
+            patterns.add(regex);
+            matcher.add(route, regex, i);
+        }
+
+        path = "/api/resource" + (routes - 1) + "/12345";
+    }
+
+    @Benchmark
+    public String linearScan() {
+        for (Pattern pattern : patterns) {
+            Matcher m = pattern.matcher(path);
+            if (m.matches()) {
+                return m.group("id");
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public String prefixTree() {
+        return matcher.match(path).next().group("id");
+    }
+
+    // same translation Router applies to simple patterns
+    private static Pattern compile(String input) {
+        Matcher m = Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)").matcher(input);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            m.appendReplacement(sb, "(?<$1>[^\\/]+)");
+        }
+        m.appendTail(sb);
+        if (sb.charAt(sb.length() - 1) != '/') {
+            sb.append("\\/?$");
+        }
+        return Pattern.compile(sb.toString());
+    }
+}
@@ -0,0 +1,145 @@
+package com.jetdrone.vertx.bench;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.core.Context;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.middleware.YokeResponse;
+import com.jetdrone.vertx.yoke.store.SharedDataSessionStore;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of walking a route with three middleware and a param processor in both Router dispatch modes.
+ *
+ * runOnContext is replaced by a local queue drained by the benchmark thread, so the numbers only include what the
+ * Router allocates itself and the YokeRequest/YokeResponse pair Yoke creates per request (the real event loop adds a
+ * task object per hop on top of this). Every invocation gets a fresh pair since the Router registers end and close
+ * handlers on the response. Run it with the gc profiler to get the allocation per request:
+ *
+ * <pre>
+ * mvn -pl examples/microbenchmark -am package
+ * java -jar examples/microbenchmark/target/benchmarks.jar RouterDispatchBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterDispatchBenchmark {
+
+    /**
+     * 0 is the default runOnContext per hop mode, anything else enables synchronous dispatch.
+     */
+    @Param({"0", "32"})
+    public int syncDepth;
+
+    private final ArrayDeque<Handler<Void>> eventLoop = new ArrayDeque<>();
+
+    private Vertx vertx;
+    private Router router;
+    private HttpServerRequest req;
+    private HttpServerResponse res;
+    private SharedDataSessionStore store;
+    private Handler<Object> done;
+
+    @Setup
+    public void setup() {
+        vertx = Vertx.vertx();
+
+        final Vertx queued = proxy(Vertx.class, new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("runOnContext".equals(method.getName())) {
+                    eventLoop.add((Handler<Void>) args[0]);
+                    return null;
+                }
+                return method.invoke(vertx, args);
+            }
+        });
+
+        final Middleware next = new Middleware() {
+            @Override
+            public void handle(YokeRequest request, Handler<Object> next) {
+                next.handle(null);
+            }
+        };
+
+        router = new Router()
+                .syncDispatch(syncDepth)
+                .param("id", next)
+                .get("/api/users/:id", next, next, next);
+
+        new Yoke(queued).use(router);
+
+        final MultiMap params = MultiMap.caseInsensitiveMultiMap();
+
+        req = proxy(HttpServerRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "method":
+                        return HttpMethod.GET;
+                    case "path":
+                        return "/api/users/12345";
+                    case "params":
+                        return params;
+                    default:
+                        return null;
+                }
+            }
+        });
+
+        res = proxy(HttpServerResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return null;
+            }
+        });
+
+        store = new SharedDataSessionStore(vertx, "bench");
+
+        done = new Handler<Object>() {
+            @Override
+            public void handle(Object event) {
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public void dispatch() {
+        final Context context = new Context(new HashMap<String, Object>());
+        router.handle(new YokeRequest(req, new YokeResponse(res, context, null), context, store), done);
+
+        Handler<Void> task;
+        while ((task = eventLoop.poll()) != null) {
+            task.handle(null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+}
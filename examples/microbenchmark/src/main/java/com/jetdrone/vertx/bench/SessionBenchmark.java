@@ -0,0 +1,79 @@
+package com.jetdrone.vertx.bench;
+
+import com.jetdrone.vertx.yoke.YokeSecurity;
+import com.jetdrone.vertx.yoke.core.YokeCookie;
+import com.jetdrone.vertx.yoke.security.SecretSecurity;
+import io.netty.handler.codec.http.cookie.DefaultCookie;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request signing cost of the Session middleware: verifying the incoming session cookie and signing the cookie of
+ * a new session. Both go through YokeSecurity.sign/unsign with the single Mac given to the middleware, which is shared
+ * by all event loops. The baselines are the obvious alternatives: lock the shared Mac, or create a Mac per request.
+ *
+ * <pre>
+ * mvn -pl examples/microbenchmark -am package
+ * java -jar examples/microbenchmark/target/benchmarks.jar SessionBenchmark -t 1
+ * java -jar examples/microbenchmark/target/benchmarks.jar SessionBenchmark -t 8
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+
+    private SecretSecurity security;
+    private Mac mac;
+    private String sessionId;
+    private String cookieValue;
+
+    @Setup
+    public void setup() {
+        security = new SecretSecurity("benchmark secret");
+        mac = security.getMac("HS256");
+        sessionId = UUID.randomUUID().toString();
+        cookieValue = "s:" + YokeSecurity.sign(sessionId, mac);
+    }
+
+    @Benchmark
+    public String verifyCookie() {
+        return new YokeCookie(new DefaultCookie("yoke.sess", cookieValue), mac).getUnsignedValue();
+    }
+
+    @Benchmark
+    public String signCookie() {
+        YokeCookie cookie = new YokeCookie("yoke.sess", mac);
+        cookie.setValue(sessionId);
+        cookie.sign();
+        return cookie.value();
+    }
+
+    @Benchmark
+    public boolean verifyLockedMac() {
+        int idx = cookieValue.lastIndexOf('.');
+        byte[] digest;
+        synchronized (mac) {
+            digest = mac.doFinal(cookieValue.substring(2, idx).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] expected = Base64.getUrlEncoder().withoutPadding().encode(digest);
+        return MessageDigest.isEqual(expected, cookieValue.substring(idx + 1).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public boolean verifyNewMac() {
+        int idx = cookieValue.lastIndexOf('.');
+        byte[] digest = security.getMac("HS256").doFinal(cookieValue.substring(2, idx).getBytes(StandardCharsets.UTF_8));
+        byte[] expected = Base64.getUrlEncoder().withoutPadding().encode(digest);
+        return MessageDigest.isEqual(expected, cookieValue.substring(idx + 1).getBytes(StandardCharsets.US_ASCII));
+    }
+}
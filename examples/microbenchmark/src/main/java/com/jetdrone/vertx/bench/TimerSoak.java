@@ -0,0 +1,122 @@
+package com.jetdrone.vertx.bench;
+
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.sockjs.BridgeOptions;
+import com.jetdrone.vertx.yoke.sockjs.PermittedOptions;
+import com.jetdrone.vertx.yoke.sockjs.SockJS;
+import com.jetdrone.vertx.yoke.sockjs.SockJSHandlerOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.WebSocket;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Soak check of the SockJS timers: heartbeats, session timeouts and bridge pings are driven by one timer wheel per
+ * event loop, so the number of live Vert.x timers of the server must stay flat while connections are added. Opens
+ * the connections in steps (half raw websockets, half SockJS websocket sessions, all on the event bus bridge) and
+ * prints the live Vert.x timers of the server after each step, then whether the count stayed flat. The exit status
+ * is 1 when it did not.
+ *
+ * <pre>
+ * mvn -pl examples/microbenchmark -am package
+ * java -cp examples/microbenchmark/target/benchmarks.jar com.jetdrone.vertx.bench.TimerSoak [connections] [steps]
+ * </pre>
+ */
+public class TimerSoak {
+
+    private static final int PORT = 8089;
+
+    public static void main(String[] args) throws Exception {
+        final int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int steps = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        final Vertx server = Vertx.vertx();
+        // the clients run on their own instance so their timers are not counted
+        final Vertx clients = Vertx.vertx();
+
+        final BridgeOptions bridgeOptions = new BridgeOptions()
+                .addOutboundPermitted(new PermittedOptions().setAddress("soak"))
+                .setPingTimeout(60000);
+
+        final SockJS sockJS = new SockJS(server, new SockJSHandlerOptions().setHeartbeatInterval(1000));
+
+        final CountDownLatch listening = new CountDownLatch(1);
+        new Yoke(server)
+                .use("/eventbus", sockJS.bridge(bridgeOptions))
+                .listen(PORT, "localhost", new Handler<Boolean>() {
+                    @Override
+                    public void handle(Boolean event) {
+                        listening.countDown();
+                    }
+                });
+        listening.await(10, TimeUnit.SECONDS);
+
+        final HttpClient client = clients.createHttpClient(new HttpClientOptions().setMaxPoolSize(connections));
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger heartbeats = new AtomicInteger();
+
+        final int baseline = liveTimers(server);
+        System.out.println("connections=0 vertxTimers=" + baseline);
+
+        int max = baseline;
+        int opened = 0;
+
+        for (int step = 1; step <= steps; step++) {
+            final int target = connections * step / steps;
+
+            for (; opened < target; opened++) {
+                final String uri = opened % 2 == 0
+                        ? "/eventbus/websocket"
+                        : "/eventbus/000/soak" + opened + "/websocket";
+
+                client.websocket(PORT, "localhost", uri, new Handler<WebSocket>() {
+                    @Override
+                    public void handle(WebSocket ws) {
+                        open.incrementAndGet();
+                        ws.handler(new Handler<Buffer>() {
+                            @Override
+                            public void handle(Buffer frame) {
+                                if (frame.length() == 1 && frame.getByte(0) == 'h') {
+                                    heartbeats.incrementAndGet();
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+
+            // long enough for every session to go through a heartbeat
+            Thread.sleep(2000);
+
+            final int timers = liveTimers(server);
+            max = Math.max(max, timers);
+            System.out.println("connections=" + open.get() + " vertxTimers=" + timers
+                    + " heartbeats=" + heartbeats.get());
+        }
+
+        // a couple of wheel timers per event loop, never one per connection
+        final boolean flat = max - baseline <= 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("flat=" + flat + " (baseline " + baseline + ", max " + max + ")");
+
+        clients.close();
+        server.close();
+        System.exit(flat ? 0 : 1);
+    }
+
+    /**
+     * Live timers of a Vert.x instance, read from VertxImpl since there is no public API for it.
+     */
+    private static int liveTimers(Vertx vertx) throws Exception {
+        final Field timeouts = vertx.getClass().getDeclaredField("timeouts");
+        timeouts.setAccessible(true);
+        return ((Map<?, ?>) timeouts.get(vertx)).size();
+    }
+}
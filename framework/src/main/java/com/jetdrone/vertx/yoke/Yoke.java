@@ -6,9 +6,14 @@ package com.jetdrone.vertx.yoke;
 import com.jetdrone.vertx.yoke.core.Context;
 import com.jetdrone.vertx.yoke.core.MountedMiddleware;
 import com.jetdrone.vertx.yoke.core.RequestWrapper;
+import com.jetdrone.vertx.yoke.core.ServerTiming;
 import com.jetdrone.vertx.yoke.core.impl.DefaultRequestWrapper;
+import com.jetdrone.vertx.yoke.core.impl.Pipeline;
+import com.jetdrone.vertx.yoke.core.impl.RequestMetrics;
 import com.jetdrone.vertx.yoke.jmx.ContextMBean;
+import com.jetdrone.vertx.yoke.jmx.MetricsMBean;
 import com.jetdrone.vertx.yoke.jmx.MiddlewareMBean;
+import com.jetdrone.vertx.yoke.middleware.Router;
 import com.jetdrone.vertx.yoke.middleware.YokeRequest;
 import com.jetdrone.vertx.yoke.security.KeyStoreSecurity;
 import com.jetdrone.vertx.yoke.security.SecretSecurity;
@@ -36,6 +41,7 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * # Yoke
@@ -81,6 +87,11 @@ public class Yoke {
      */
     private final Map<String, Engine> engineMap = new HashMap<>();
 
+    /**
+     * Runtime numbers of all requests handled by this instance
+     */
+    private final RequestMetrics metrics = new RequestMetrics();
+
     /**
      * Creates a Yoke instance.
      *
@@ -154,6 +165,7 @@ public class Yoke {
         // register on JMX
         try {
             mbs.registerMBean(new ContextMBean(defaultContext), new ObjectName("com.jetdrone.yoke:instance=@" + hashCode() + ",type=DefaultContext@" + defaultContext.hashCode()));
+            mbs.registerMBean(new MetricsMBean(metrics), new ObjectName("com.jetdrone.yoke:instance=@" + hashCode() + ",type=Metrics"));
         } catch (InstanceAlreadyExistsException e) {
             // ignore
         } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
@@ -170,6 +182,26 @@ public class Yoke {
      */
     private final List<MountedMiddleware> middlewareList = new ArrayList<>();
 
+    /**
+     * Snapshot of the middleware chain used to dispatch requests, rebuilt lazily after the chain changes
+     */
+    private volatile Pipeline pipeline;
+
+    /**
+     * Incremented on every change of the chain, a snapshot built from an older version is rebuilt
+     */
+    private final AtomicLong chainVersion = new AtomicLong();
+
+    /**
+     * Invalidates the pipeline snapshot when a middleware is enabled or disabled (e.g.: from JMX)
+     */
+    private final Handler<MountedMiddleware> pipelineInvalidator = new Handler<MountedMiddleware>() {
+        @Override
+        public void handle(MountedMiddleware event) {
+            chainVersion.incrementAndGet();
+        }
+    };
+
     /**
      * Special middleware used for error handling
      */
@@ -198,8 +230,9 @@ public class Yoke {
                 if (((Middleware) m).isErrorHandler()) {
                     errorHandler = m;
                 } else {
-                    MountedMiddleware mm = new MountedMiddleware(route, m);
+                    MountedMiddleware mm = new MountedMiddleware(route, m, pipelineInvalidator);
                     middlewareList.add(mm);
+                    chainVersion.incrementAndGet();
 
                     // register on JMX
                     try {
@@ -212,8 +245,9 @@ public class Yoke {
                 // initialize the middleware with the current Vert.x and Logger
                 ((Middleware) m).init(this, route);
             } else {
-                MountedMiddleware mm = new MountedMiddleware(route, m);
+                MountedMiddleware mm = new MountedMiddleware(route, m, pipelineInvalidator);
                 middlewareList.add(mm);
+                chainVersion.incrementAndGet();
 
                 // register on JMX
                 try {
@@ -261,7 +295,8 @@ public class Yoke {
             public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
                 handler.handle(request);
             }
-        }));
+        }, pipelineInvalidator));
+        chainVersion.incrementAndGet();
         return this;
     }
 
@@ -467,76 +502,190 @@ public class Yoke {
                     request.response().putHeader("x-powered-by", "yoke");
                 }
 
-                new Handler<Object>() {
-                    int currentMiddleware = -1;
-
-                    @Override
-                    public void handle(Object error) {
-                        if (error == null) {
-                            currentMiddleware++;
-                            if (currentMiddleware < middlewareList.size()) {
-                                final MountedMiddleware mountedMiddleware = middlewareList.get(currentMiddleware);
-
-                                if (!mountedMiddleware.enabled) {
-                                    // the middleware is disabled
-                                    handle(null);
-                                } else {
-                                    if (request.path().startsWith(mountedMiddleware.mount)) {
-                                        mountedMiddleware.middleware.handle(request, this);
-                                    } else {
-                                        // the middleware was not mounted on this uri, skip to the next entry
-                                        handle(null);
-                                    }
-                                }
-                            } else {
-                                HttpServerResponse response = request.response();
-                                // reached the end and no handler was able to answer the request
-                                response.setStatusCode(404);
-                                response.setStatusMessage(HttpResponseStatus.valueOf(404).reasonPhrase());
-                                if (errorHandler != null) {
-                                    errorHandler.handle(request, null);
-                                } else {
-                                    response.end(HttpResponseStatus.valueOf(404).reasonPhrase());
-                                }
-                            }
+                final RequestChain chain = new RequestChain(request, lookup(request.path()));
+                request.response().endHandler(chain.finished);
+                request.response().closeHandler(chain.aborted);
+                chain.handle(null);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Snapshot of the runtime numbers of the server, every mounted middleware and, for routers, every route.
+     */
+    public JsonObject metrics() {
+        final JsonArray middleware = new JsonArray();
+
+        synchronized (middlewareList) {
+            for (MountedMiddleware mm : middlewareList) {
+                final JsonObject json = mm.metrics.toJson()
+                        .put("mount", mm.mount)
+                        .put("type", mm.middleware.getClass().getName())
+                        .put("enabled", mm.isEnabled());
+
+                if (mm.middleware instanceof Router) {
+                    json.put("routes", ((Router) mm.middleware).metrics());
+                }
+
+                middleware.add(json);
+            }
+        }
+
+        return new JsonObject()
+                .put("server", metrics.toJson())
+                .put("middleware", middleware);
+    }
+
+    /**
+     * Returns the middleware chain for a path, a middleware enabled or disabled by a direct write to its field
+     * outdates the snapshot.
+     */
+    private MountedMiddleware[] lookup(String path) {
+        while (true) {
+            final Pipeline current = pipeline();
+            final MountedMiddleware[] chain = current.lookup(path);
+            if (chain != null) {
+                return chain;
+            }
+            // only the first request to notice it invalidates the snapshot
+            chainVersion.compareAndSet(current.version, current.version + 1);
+        }
+    }
+
+    /**
+     * Returns the current pipeline snapshot, building it if the chain was modified since the last request.
+     */
+    private Pipeline pipeline() {
+        Pipeline current = pipeline;
+        if (current == null || current.version != chainVersion.get()) {
+            synchronized (middlewareList) {
+                current = pipeline;
+                // read before the list, a change made while building leaves the snapshot outdated
+                final long version = chainVersion.get();
+                if (current == null || current.version != version) {
+                    current = new Pipeline(middlewareList, version);
+                    pipeline = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Cursor over the precomputed middleware of a request, it is the next handler passed to every middleware.
+     */
+    private final class RequestChain implements Handler<Object> {
+
+        private final YokeRequest request;
+        private final MountedMiddleware[] chain;
+        private int currentMiddleware = 0;
+
+        // metrics, the middleware handling the request and since when
+        private final long start;
+        private MountedMiddleware current;
+        private long currentStart;
+        private boolean done;
+
+        private final Handler<Void> finished = new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                if (!done) {
+                    done = true;
+                    final int status = request.response().getStatusCode();
+                    if (current != null) {
+                        current.metrics.end(currentStart, status);
+                        current = null;
+                    }
+                    metrics.end(start, status);
+                }
+            }
+        };
+
+        private final Handler<Void> aborted = new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                if (!done) {
+                    done = true;
+                    if (current != null) {
+                        current.metrics.leave(currentStart, true);
+                        current = null;
+                    }
+                    metrics.leave(start, true);
+                }
+            }
+        };
+
+        private RequestChain(YokeRequest request, MountedMiddleware[] chain) {
+            this.request = request;
+            this.chain = chain;
+            this.start = metrics.enter();
+        }
+
+        @Override
+        public void handle(Object error) {
+            if (current != null) {
+                current.metrics.leave(currentStart, error != null);
+                current = null;
+            }
+
+            if (error == null) {
+                if (currentMiddleware < chain.length) {
+                    final MountedMiddleware mm = chain[currentMiddleware++];
+                    if (!done) {
+                        current = mm;
+                        currentStart = mm.metrics.enter();
+                    }
+                    final ServerTiming timing = request.timing();
+                    if (timing != null) {
+                        timing.start(mm.middleware);
+                    }
+                    mm.middleware.handle(request, this);
+                } else {
+                    HttpServerResponse response = request.response();
+                    // reached the end and no handler was able to answer the request
+                    response.setStatusCode(404);
+                    response.setStatusMessage(HttpResponseStatus.valueOf(404).reasonPhrase());
+                    if (errorHandler != null) {
+                        errorHandler.handle(request, null);
+                    } else {
+                        response.end(HttpResponseStatus.valueOf(404).reasonPhrase());
+                    }
+                }
+            } else {
+                request.put("error", error);
+                if (errorHandler != null) {
+                    errorHandler.handle(request, null);
+                } else {
+                    HttpServerResponse response = request.response();
+
+                    int errorCode;
+                    // if the error was set on the response use it
+                    if (response.getStatusCode() >= 400) {
+                        errorCode = response.getStatusCode();
+                    } else {
+                        // if it was set as the error object use it
+                        if (error instanceof Number) {
+                            errorCode = ((Number) error).intValue();
+                        } else if (error instanceof YokeException) {
+                            errorCode = ((YokeException) error).getErrorCode().intValue();
+                        } else if (error instanceof JsonObject) {
+                            errorCode = ((JsonObject) error).getInteger("errorCode", 500);
+                        } else if (error instanceof Map) {
+                            Integer tmp = (Integer) ((Map) error).get("errorCode");
+                            errorCode = tmp != null ? tmp : 500;
                         } else {
-                            request.put("error", error);
-                            if (errorHandler != null) {
-                                errorHandler.handle(request, null);
-                            } else {
-                                HttpServerResponse response = request.response();
-
-                                int errorCode;
-                                // if the error was set on the response use it
-                                if (response.getStatusCode() >= 400) {
-                                    errorCode = response.getStatusCode();
-                                } else {
-                                    // if it was set as the error object use it
-                                    if (error instanceof Number) {
-                                        errorCode = ((Number) error).intValue();
-                                    } else if (error instanceof YokeException) {
-                                        errorCode = ((YokeException) error).getErrorCode().intValue();
-                                    } else if (error instanceof JsonObject) {
-                                        errorCode = ((JsonObject) error).getInteger("errorCode", 500);
-                                    } else if (error instanceof Map) {
-                                        Integer tmp = (Integer) ((Map) error).get("errorCode");
-                                        errorCode = tmp != null ? tmp : 500;
-                                    } else {
-                                        // default error code
-                                        errorCode = 500;
-                                    }
-                                }
-
-                                response.setStatusCode(errorCode);
-                                response.setStatusMessage(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
-                                response.end(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
-                            }
+                            // default error code
+                            errorCode = 500;
                         }
                     }
-                }.handle(null);
+
+                    response.setStatusCode(errorCode);
+                    response.setStatusMessage(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
+                    response.end(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
+                }
             }
-        });
-        return this;
+        }
     }
 
     /**
@@ -1,10 +1,15 @@
 package com.jetdrone.vertx.yoke;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.crypto.*;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public abstract class YokeSecurity {
 
@@ -19,6 +24,15 @@ public abstract class YokeSecurity {
 
     public abstract Signature getSignature(final @NotNull String alias);
 
+    /**
+     * Creates a new Signature initialized to verify what the Signature of the same alias signs
+     * @param alias algorithm to use e.g.: RS256
+     * @return Signature implementation, null when not supported (signatures are then verified by signing again)
+     */
+    public @Nullable Signature getVerifier(final @NotNull String alias) {
+        return null;
+    }
+
     /**
      * Creates a new Crypto KEY
      * @return Key implementation
@@ -40,14 +54,92 @@ public abstract class YokeSecurity {
     }
 
     /**
-     * Signs a String value with a given MAC
+     * Per thread state used to sign, the Mac given to sign/unsign is shared (e.g.: by a Session middleware used by
+     * all event loops) so each thread signs with its own clone of it and reuses the output buffers.
+     */
+    private static final class Signer {
+        private final Mac mac;
+        // the Mac could not be cloned, fall back to lock the shared instance
+        private final boolean shared;
+        private final byte[] digest;
+        private final byte[] encoded;
+
+        private Signer(Mac mac, boolean shared) {
+            this.mac = mac;
+            this.shared = shared;
+            this.digest = new byte[mac.getMacLength()];
+            this.encoded = new byte[(digest.length * 4 + 2) / 3];
+        }
+
+        /**
+         * Signs the value and returns the number of bytes of the base64url (no padding) signature in *encoded*.
+         */
+        private int sign(String val) {
+            final byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+            try {
+                if (shared) {
+                    synchronized (mac) {
+                        mac.update(bytes);
+                        mac.doFinal(digest, 0);
+                    }
+                } else {
+                    mac.update(bytes);
+                    mac.doFinal(digest, 0);
+                }
+            } catch (ShortBufferException e) {
+                throw new RuntimeException(e);
+            }
+            return BASE64URL.encode(digest, encoded);
+        }
+    }
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private static final ThreadLocal<Map<Mac, Signer>> SIGNERS = new ThreadLocal<Map<Mac, Signer>>() {
+        @Override
+        protected Map<Mac, Signer> initialValue() {
+            // Mac does not override equals, entries go away with the Mac they were cloned from
+            return new WeakHashMap<>();
+        }
+    };
+
+    private static Signer signer(Mac mac) {
+        final Map<Mac, Signer> signers = SIGNERS.get();
+        Signer signer = signers.get(mac);
+
+        if (signer == null) {
+            try {
+                synchronized (mac) {
+                    signer = new Signer((Mac) mac.clone(), false);
+                }
+            } catch (CloneNotSupportedException e) {
+                signer = new Signer(mac, true);
+            }
+            signers.put(mac, signer);
+        }
+
+        return signer;
+    }
+
+    /**
+     * Signs a String value with a given MAC, the result is *value.signature* where the signature is the base64url
+     * (without padding) of the MAC of the UTF-8 bytes of the value.
      */
     public static String sign(@NotNull String val, @NotNull Mac mac) {
-        return val + "." + Base64.getEncoder().encodeToString(val.getBytes());
+        final Signer signer = signer(mac);
+        final int len = signer.sign(val);
+
+        final StringBuilder sb = new StringBuilder(val.length() + 1 + len);
+        sb.append(val).append('.');
+        for (int i = 0; i < len; i++) {
+            sb.append((char) signer.encoded[i]);
+        }
+        return sb.toString();
     }
 
     /**
-     * Returns the original value is the signature is correct. Null otherwise.
+     * Returns the original value is the signature is correct. Null otherwise. The signature comparison takes the same
+     * time wherever the first difference is.
      */
     public static String unsign(@NotNull String val, @NotNull Mac mac) {
         int idx = val.lastIndexOf('.');
@@ -56,8 +148,23 @@ public abstract class YokeSecurity {
             return null;
         }
 
-        String str = val.substring(0, idx);
-        if (val.equals(sign(str, mac))) {
+        final String str = val.substring(0, idx);
+        final Signer signer = signer(mac);
+        final int len = signer.sign(str);
+
+        if (val.length() - idx - 1 != len) {
+            return null;
+        }
+
+        final byte[] expected = signer.encoded.length == len ? signer.encoded : Arrays.copyOf(signer.encoded, len);
+        final byte[] actual = new byte[len];
+        for (int i = 0; i < len; i++) {
+            final char c = val.charAt(idx + 1 + i);
+            // non ASCII chars cannot match
+            actual[i] = c < 0x80 ? (byte) c : 0;
+        }
+
+        if (MessageDigest.isEqual(expected, actual)) {
             return str;
         }
         return null;
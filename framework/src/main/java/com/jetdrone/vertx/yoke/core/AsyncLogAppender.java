@@ -0,0 +1,383 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * # AsyncLogAppender
+ *
+ * Appends lines to a file without doing any IO on the calling thread. Lines are handed to a bounded lock-free ring
+ * buffer (safe for many producers, e.g.: all the event loops) and a single background thread drains it in batches,
+ * encodes them and writes them with a FileChannel.
+ *
+ * The file is rotated when it grows over *maxSize* bytes or when *maxAge* milliseconds passed since it was opened, the
+ * current file is renamed to *file.yyyyMMdd-HHmmss.SSS* (UTC) and a new one is created. Use 0 to disable either of them.
+ *
+ * When the ring is full the *Policy* decides: *DROP* discards the line (and counts it) so the event loop never waits,
+ * *BLOCK* waits for the writer to make room.
+ *
+ * <pre>
+ * AsyncLogAppender access = new AsyncLogAppender("logs/access.log", 8192, 64 * 1024 * 1024, 24 * 60 * 60 * 1000, AsyncLogAppender.Policy.DROP);
+ * yoke.use(new Logger(false, Logger.Format.DEFAULT, access));
+ * </pre>
+ */
+public final class AsyncLogAppender implements Closeable {
+
+    /**
+     * What to do with a line when the ring buffer is full.
+     */
+    public enum Policy {
+        DROP,
+        BLOCK
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncLogAppender.class);
+
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final File file;
+    private final long maxSize;
+    private final long maxAge;
+    private final Policy policy;
+
+    // ring buffer, a slot is free for the producer of position p when its sequence is p and holds a line for the
+    // consumer when its sequence is p + 1
+    private final int mask;
+    private final AtomicReferenceArray<String> lines;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // only written by the writer thread
+    private volatile long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    // writer thread state
+    private FileChannel channel;
+    private long size;
+    private long opened;
+    // lines (or their ends) in the bytes buffer, accounted as written or dropped when flushed
+    private int batched;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BATCH_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * @param filename file to append to
+     * @param capacity lines the ring buffer holds, rounded up to a power of 2
+     * @param maxSize  bytes after which the file is rotated, 0 to disable
+     * @param maxAge   milliseconds after which the file is rotated, 0 to disable
+     * @param policy   what to do when the ring buffer is full
+     */
+    public AsyncLogAppender(@NotNull final String filename, int capacity, long maxSize, long maxAge, @NotNull final Policy policy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+
+        final int slots = Integer.highestOneBit(capacity - 1) << 1;
+
+        this.file = new File(filename);
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.policy = policy;
+        this.mask = slots - 1;
+        this.lines = new AtomicReferenceArray<>(slots);
+        this.sequences = new AtomicLongArray(slots);
+
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+
+        try {
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "yoke-log-writer-" + file.getName());
+        writer.setDaemon(true);
+        writer.start();
+
+        // do not lose the tail of the log on a regular shutdown
+        shutdownHook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public AsyncLogAppender(@NotNull final String filename) {
+        this(filename, 8192, 0, 0, Policy.DROP);
+    }
+
+    /**
+     * Queues a line (a line separator is added), never does IO.
+     *
+     * @return false if the line was dropped
+     */
+    public boolean append(@NotNull final String line) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+
+        while (true) {
+            final long pos = tail.get();
+            final int slot = (int) pos & mask;
+            final long seq = sequences.get(slot);
+
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    lines.lazySet(slot, line);
+                    sequences.set(slot, pos + 1);
+
+                    if (idle) {
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+            } else if (seq < pos) {
+                // full
+                if (policy == Policy.DROP || closed) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(1000);
+            }
+            // else another producer took the slot, retry
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            final boolean stopping = closed;
+            final int count = drain();
+
+            if (count == 0) {
+                // a producer that won a slot before the close may not have published it yet, only stop once the
+                // ring is sealed: the tail is moved a whole lap ahead so late producers find it full and drop
+                if (stopping && tail.compareAndSet(head, head + mask + 1)) {
+                    head += mask + 1;
+                    break;
+                }
+                idle = true;
+                // re-check after announcing, a producer may have missed the flag
+                if (!stopping && !hasNext()) {
+                    LockSupport.parkNanos(this, IDLE_PARK);
+                }
+                idle = false;
+            }
+
+            if (maxAge > 0 && System.currentTimeMillis() - opened >= maxAge && size > 0 && channel.isOpen()) {
+                rotate();
+            }
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.error("Failed to close " + file, e);
+        }
+    }
+
+    private boolean hasNext() {
+        return sequences.get((int) head & mask) == head + 1;
+    }
+
+    /**
+     * Writes all the queued lines in batches.
+     *
+     * @return number of lines written
+     */
+    private int drain() {
+        int count = 0;
+
+        while (hasNext()) {
+            final int slot = (int) head & mask;
+            final String line = lines.get(slot);
+            lines.lazySet(slot, null);
+            // hand the slot back to the producers, one lap later
+            sequences.set(slot, head + mask + 1);
+            head++;
+
+            encode(line);
+            encode(System.lineSeparator());
+            batched++;
+            count++;
+
+            // only rotate at line boundaries
+            if (maxSize > 0 && size + bytes.position() >= maxSize) {
+                flush();
+                rotate();
+            }
+        }
+
+        flush();
+        return count;
+    }
+
+    private void encode(String text) {
+        final CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            final CoderResult res = encoder.encode(chars, bytes, true);
+            if (res.isOverflow()) {
+                flush();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+    }
+
+    private void flush() {
+        if (bytes.position() == 0) {
+            return;
+        }
+
+        bytes.flip();
+        try {
+            // a failed rotation left the file closed, try again before giving up on the batch
+            if (!channel.isOpen()) {
+                open();
+            }
+            while (bytes.hasRemaining()) {
+                size += channel.write(bytes);
+            }
+            written.add(batched);
+        } catch (IOException e) {
+            LOG.error("Failed to write " + file, e);
+            dropped.add(batched);
+        }
+        batched = 0;
+        bytes.clear();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        opened = System.currentTimeMillis();
+    }
+
+    private void rotate() {
+        try {
+            channel.close();
+
+            final SimpleDateFormat df = new SimpleDateFormat("yyyyMMdd-HHmmss.SSS");
+            df.setTimeZone(TimeZone.getTimeZone("UTC"));
+            final String name = file.getPath() + "." + df.format(new Date());
+            File target = new File(name);
+            // never overwrite a previous rotation
+            for (int i = 1; target.exists(); i++) {
+                target = new File(name + "." + i);
+            }
+
+            if (!file.renameTo(target)) {
+                LOG.error("Failed to rotate " + file + " to " + target);
+            }
+            rotations.increment();
+        } catch (IOException e) {
+            LOG.error("Failed to rotate " + file, e);
+        }
+
+        try {
+            open();
+        } catch (IOException e) {
+            // keep draining, the next flush tries to open it again
+            LOG.error("Failed to open " + file, e);
+        }
+    }
+
+    /**
+     * Stops accepting lines, writes the queued ones and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // the hook keeps the appender (and its buffer) reachable until the JVM exits
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down (possibly running this hook)
+        }
+    }
+
+    /**
+     * Lines discarded because the ring buffer was full, the appender closed or the file could not be written.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Lines written to disk.
+     */
+    public long written() {
+        return written.sum();
+    }
+
+    /**
+     * Lines waiting to be written.
+     */
+    public long pending() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Number of times the file was rotated.
+     */
+    public long rotations() {
+        return rotations.sum();
+    }
+}
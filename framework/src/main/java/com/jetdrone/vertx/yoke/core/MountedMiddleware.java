@@ -1,7 +1,10 @@
 package com.jetdrone.vertx.yoke.core;
 
 import com.jetdrone.vertx.yoke.IMiddleware;
+import com.jetdrone.vertx.yoke.core.impl.RequestMetrics;
+import io.vertx.core.Handler;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Mounted middleware represents a binding of a Middleware instance to a specific url path.
@@ -9,7 +12,14 @@ import org.jetbrains.annotations.NotNull;
 public final class MountedMiddleware {
     public final String mount;
     public final IMiddleware middleware;
-    public boolean enabled = true;
+    // runtime numbers of this middleware
+    public final RequestMetrics metrics = new RequestMetrics();
+    /**
+     * Disabled middleware are skipped, a direct write is honoured on the next request although setEnabled is cheaper.
+     */
+    public volatile boolean enabled = true;
+
+    private final Handler<MountedMiddleware> changeHandler;
 
     /**
      * Constructs a new Mounted Middleware
@@ -18,8 +28,32 @@ public final class MountedMiddleware {
      * @param middleware Middleware to use on the path.
      */
     public MountedMiddleware(@NotNull String mount, @NotNull IMiddleware middleware) {
+        this(mount, middleware, null);
+    }
+
+    /**
+     * Constructs a new Mounted Middleware
+     *
+     * @param mount         Mount path
+     * @param middleware    Middleware to use on the path.
+     * @param changeHandler Called every time the enabled flag changes.
+     */
+    public MountedMiddleware(@NotNull String mount, @NotNull IMiddleware middleware, @Nullable Handler<MountedMiddleware> changeHandler) {
         this.mount = mount;
         this.middleware = middleware;
+        this.changeHandler = changeHandler;
     }
 
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            if (changeHandler != null) {
+                changeHandler.handle(this);
+            }
+        }
+    }
 }
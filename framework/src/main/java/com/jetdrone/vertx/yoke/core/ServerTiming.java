@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import com.jetdrone.vertx.yoke.IMiddleware;
+
+import java.util.Arrays;
+
+/**
+ * # ServerTiming
+ *
+ * Time spent by each middleware handling a request, formatted as a *Server-Timing* header. A segment starts when a
+ * middleware is called and ends when the next one is called (or when the header is generated), only the middleware
+ * and a nano time are recorded per segment, names are resolved when the header is built.
+ */
+public final class ServerTiming {
+
+    private IMiddleware[] middleware;
+    private long[] starts;
+    private long[] durations;
+    private int size;
+
+    private final long start = System.nanoTime();
+
+    public ServerTiming(int capacity) {
+        middleware = new IMiddleware[capacity];
+        starts = new long[capacity];
+        durations = new long[capacity];
+    }
+
+    /**
+     * Ends the current segment (if any) and starts one for the given middleware.
+     */
+    public void start(IMiddleware m) {
+        final long now = System.nanoTime();
+        stop(now);
+
+        if (size == middleware.length) {
+            final int capacity = Math.max(4, size * 2);
+            middleware = Arrays.copyOf(middleware, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+
+        middleware[size] = m;
+        starts[size] = now;
+        durations[size] = -1;
+        size++;
+    }
+
+    private void stop(long now) {
+        if (size > 0 && durations[size - 1] == -1) {
+            durations[size - 1] = now - starts[size - 1];
+        }
+    }
+
+    /**
+     * Nanoseconds since this object was created.
+     */
+    public long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Ends the current segment and formats all of them, e.g.: *Logger;dur=0.012, Router;dur=1.204, total;dur=1.250*.
+     */
+    public String header() {
+        final long now = System.nanoTime();
+        stop(now);
+
+        final StringBuilder sb = new StringBuilder(32 * (size + 1));
+        for (int i = 0; i < size; i++) {
+            appendName(sb, middleware[i], i);
+            sb.append(";dur=");
+            appendMillis(sb, durations[i] / 1000);
+            sb.append(", ");
+        }
+        sb.append("total;dur=");
+        appendMillis(sb, (now - start) / 1000);
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends microseconds as milliseconds with 3 decimals.
+     */
+    public static StringBuilder appendMillis(StringBuilder sb, long micros) {
+        final long fraction = micros % 1000;
+        sb.append(micros / 1000).append('.');
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    private static void appendName(StringBuilder sb, IMiddleware m, int index) {
+        Class<?> type = m.getClass();
+        // e.g.: new Router() {{ ... }}
+        while (type.isAnonymousClass()) {
+            type = type.getSuperclass();
+        }
+
+        final String name = type.getSimpleName();
+        final int len = sb.length();
+
+        // the name must be a token
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.') {
+                sb.append(c);
+            }
+        }
+
+        // nothing usable
+        if (sb.length() == len) {
+            sb.append("middleware").append(index);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * # YokeSession
+ *
+ * A session loaded from a store. It behaves as a plain JsonObject but records if it was modified, so an unchanged session
+ * does not need to be encoded and written back to the store at the end of the request.
+ *
+ * Changes through the JsonObject setters are tracked directly. Nested objects and arrays (or the backing map and its
+ * key set) can be changed without going through this object, so the first time one of them is handed out a copy of the
+ * session is kept and compared (not encoded) with the session when asked if it is dirty.
+ */
+public class YokeSession extends JsonObject {
+
+    private boolean dirty;
+    private JsonObject snapshot;
+
+    /**
+     * Wraps a freshly loaded session, the map is not copied so it should not be used after this.
+     */
+    public YokeSession(@NotNull final JsonObject session) {
+        super(session.getMap());
+    }
+
+    /**
+     * @return true if the session may have been modified since it was loaded
+     */
+    public boolean isDirty() {
+        if (dirty) {
+            return true;
+        }
+
+        // JsonObject equals requires the same class, compare a plain view of the same map
+        return snapshot != null && !snapshot.equals(new JsonObject(super.getMap()));
+    }
+
+    private void modified() {
+        dirty = true;
+        // no need to compare anymore
+        snapshot = null;
+    }
+
+    private void escaped() {
+        if (!dirty && snapshot == null) {
+            snapshot = super.copy();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return new JsonObject(super.getMap()).equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public JsonObject getJsonObject(String key) {
+        escaped();
+        return super.getJsonObject(key);
+    }
+
+    @Override
+    public JsonObject getJsonObject(String key, JsonObject def) {
+        escaped();
+        return super.getJsonObject(key, def);
+    }
+
+    @Override
+    public JsonArray getJsonArray(String key) {
+        escaped();
+        return super.getJsonArray(key);
+    }
+
+    @Override
+    public JsonArray getJsonArray(String key, JsonArray def) {
+        escaped();
+        return super.getJsonArray(key, def);
+    }
+
+    @Override
+    public Object getValue(String key) {
+        escaped();
+        return super.getValue(key);
+    }
+
+    @Override
+    public Object getValue(String key, Object def) {
+        escaped();
+        return super.getValue(key, def);
+    }
+
+    @Override
+    public Map<String, Object> getMap() {
+        escaped();
+        return super.getMap();
+    }
+
+    @Override
+    public Set<String> fieldNames() {
+        // the live key set of the map, removing from it changes the session
+        escaped();
+        return super.fieldNames();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+        escaped();
+        return super.iterator();
+    }
+
+    @Override
+    public Stream<Map.Entry<String, Object>> stream() {
+        escaped();
+        return super.stream();
+    }
+
+    // raw like JsonObject.put(String, Enum), an Enum<?> parameter would not override it
+    @Override
+    @SuppressWarnings("rawtypes")
+    public JsonObject put(String key, Enum value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, CharSequence value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, String value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Integer value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Long value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Double value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Float value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Boolean value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject putNull(String key) {
+        modified();
+        return super.putNull(key);
+    }
+
+    @Override
+    public JsonObject put(String key, JsonObject value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, JsonArray value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, byte[] value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Instant value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public JsonObject put(String key, Object value) {
+        modified();
+        return super.put(key, value);
+    }
+
+    @Override
+    public Object remove(String key) {
+        modified();
+        return super.remove(key);
+    }
+
+    @Override
+    public JsonObject mergeIn(JsonObject other) {
+        modified();
+        return super.mergeIn(other);
+    }
+
+    @Override
+    public JsonObject clear() {
+        modified();
+        return super.clear();
+    }
+}
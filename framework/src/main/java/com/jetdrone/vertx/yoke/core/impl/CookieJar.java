@@ -0,0 +1,196 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import com.jetdrone.vertx.yoke.core.YokeCookie;
+import io.netty.handler.codec.http.cookie.DefaultCookie;
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Mac;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * # CookieJar
+ *
+ * Lazy view over a request *Cookie* header. Nothing is done until a cookie is requested, then the header is indexed by
+ * name in a single pass (values are only located, not copied) and from that moment on only the requested cookies are
+ * decoded and, when signed, verified. Decoded cookies are kept so asking twice for the same cookie costs a map lookup.
+ *
+ * A signed cookie with a bad signature is treated as missing.
+ */
+public final class CookieJar {
+
+    // a cookie value in the header, one per occurrence of the name
+    private static final class Slot {
+        private final int start;
+        private final int end;
+        private Slot next;
+
+        private YokeCookie cookie;
+        private boolean decoded;
+
+        private Slot(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final String header;
+    private final Mac mac;
+
+    private Map<String, Slot> index;
+
+    public CookieJar(@NotNull final String header, final Mac mac) {
+        this.header = header;
+        this.mac = mac;
+    }
+
+    /**
+     * Returns the first valid cookie with the given name or null.
+     */
+    public YokeCookie get(@NotNull final String name) {
+        for (Slot slot = index().get(name); slot != null; slot = slot.next) {
+            final YokeCookie cookie = decode(name, slot);
+            if (cookie != null) {
+                return cookie;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all the valid cookies with the given name.
+     */
+    public List<YokeCookie> getAll(@NotNull final String name) {
+        Slot slot = index().get(name);
+
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+
+        final List<YokeCookie> found = new ArrayList<>(2);
+        for (; slot != null; slot = slot.next) {
+            final YokeCookie cookie = decode(name, slot);
+            if (cookie != null) {
+                found.add(cookie);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Decodes every cookie in the header, sorted by name.
+     */
+    public Set<YokeCookie> all() {
+        final Set<YokeCookie> cookies = new TreeSet<>();
+        for (Map.Entry<String, Slot> entry : index().entrySet()) {
+            for (Slot slot = entry.getValue(); slot != null; slot = slot.next) {
+                final YokeCookie cookie = decode(entry.getKey(), slot);
+                if (cookie != null) {
+                    cookies.add(cookie);
+                }
+            }
+        }
+        return cookies;
+    }
+
+    private YokeCookie decode(String name, Slot slot) {
+        if (!slot.decoded) {
+            slot.decoded = true;
+
+            int start = slot.start;
+            int end = slot.end;
+            // quoted values are unwrapped (same as the netty decoder)
+            if (end - start >= 2 && header.charAt(start) == '"' && header.charAt(end - 1) == '"') {
+                start++;
+                end--;
+            }
+
+            final YokeCookie cookie = new YokeCookie(new DefaultCookie(name, header.substring(start, end)), mac);
+            // the value is null when the signature does not match, the cookie has been tampered
+            if (cookie.getUnsignedValue() != null) {
+                slot.cookie = cookie;
+            }
+        }
+        return slot.cookie;
+    }
+
+    private Map<String, Slot> index() {
+        if (index == null) {
+            index = new HashMap<>();
+
+            final String h = header;
+            final int len = h.length();
+            int i = 0;
+
+            while (i < len) {
+                // skip separators and white space
+                char c = h.charAt(i);
+                if (c == ';' || c == ',' || c == ' ' || c == '\t') {
+                    i++;
+                    continue;
+                }
+
+                int nameStart = i;
+                while (i < len && (c = h.charAt(i)) != '=' && c != ';' && c != ',') {
+                    i++;
+                }
+                int nameEnd = i;
+                while (nameEnd > nameStart && h.charAt(nameEnd - 1) <= ' ') {
+                    nameEnd--;
+                }
+
+                int valueStart = i;
+                int valueEnd = i;
+
+                if (i < len && h.charAt(i) == '=') {
+                    i++;
+                    while (i < len && ((c = h.charAt(i)) == ' ' || c == '\t')) {
+                        i++;
+                    }
+                    valueStart = i;
+                    if (i < len && h.charAt(i) == '"') {
+                        // quoted values may contain separators
+                        final int close = h.indexOf('"', i + 1);
+                        i = close == -1 ? len : close + 1;
+                    }
+                    while (i < len && h.charAt(i) != ';') {
+                        i++;
+                    }
+                    valueEnd = i;
+                    while (valueEnd > valueStart && h.charAt(valueEnd - 1) <= ' ') {
+                        valueEnd--;
+                    }
+                }
+
+                // RFC 2965 attributes ($Version, $Path, ...) are not cookies
+                if (nameEnd == nameStart || h.charAt(nameStart) == '$') {
+                    continue;
+                }
+
+                final String name = h.substring(nameStart, nameEnd);
+                final Slot slot = new Slot(valueStart, valueEnd);
+                final Slot first = index.get(name);
+
+                if (first == null) {
+                    index.put(name, slot);
+                } else {
+                    // keep the header order
+                    Slot last = first;
+                    while (last.next != null) {
+                        last = last.next;
+                    }
+                    last.next = slot;
+                }
+            }
+        }
+        return index;
+    }
+}
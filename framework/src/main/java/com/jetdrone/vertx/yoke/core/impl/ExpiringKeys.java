@@ -0,0 +1,186 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import io.vertx.core.Handler;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deadlines for a set of keys, bucketed by time so expired keys are found without scanning the live ones.
+ *
+ * Each key is in the bucket of the time slot (of *resolution* milliseconds) its deadline falls in, or of the next slot
+ * to reap when that one is already reaped. The slot is kept with the deadline, moving a deadline moves the key to
+ * another bucket. Reaping walks the buckets of the slots that are over since the previous reap, so the work is
+ * proportional to the expired keys (plus the elapsed slots), not to the number of keys.
+ *
+ * Thread safe and Shareable so the instances of a store running on different event loops can share it.
+ */
+public final class ExpiringKeys implements Shareable {
+
+    // a deadline and the slot of the bucket the key was added to
+    private static final class Deadline {
+        private final long time;
+        private final long slot;
+
+        private Deadline(long time, long slot) {
+            this.time = time;
+            this.slot = slot;
+        }
+    }
+
+    private final long resolution;
+
+    private final ConcurrentHashMap<String, Deadline> deadlines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean reaping = new AtomicBoolean();
+    // last slot reaped (or being reaped), set before its bucket is taken out
+    private volatile long reaped;
+
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * @param resolution milliseconds covered by a bucket, keys expire at most this late
+     */
+    public ExpiringKeys(long resolution) {
+        this.resolution = resolution;
+        this.reaped = System.currentTimeMillis() / resolution - 1;
+    }
+
+    /**
+     * Sets (or moves) the deadline of a key, a deadline of 0 means it never expires.
+     */
+    public void expireAt(String key, long deadline) {
+        if (deadline <= 0) {
+            remove(key);
+            return;
+        }
+
+        final long slot = link(key, deadline / resolution);
+        final Deadline previous = deadlines.put(key, new Deadline(deadline, slot));
+
+        if (previous != null && previous.slot != slot) {
+            unlink(key, previous.slot);
+        }
+    }
+
+    public boolean isExpired(String key, long now) {
+        final Deadline deadline = deadlines.get(key);
+        return deadline != null && deadline.time <= now;
+    }
+
+    public void remove(String key) {
+        final Deadline previous = deadlines.remove(key);
+        if (previous != null) {
+            unlink(key, previous.slot);
+        }
+    }
+
+    public void clear() {
+        deadlines.clear();
+        buckets.clear();
+    }
+
+    /**
+     * Removes the keys whose deadline passed, calling the handler for each of them. Only one thread reaps at a time,
+     * concurrent calls return immediately.
+     *
+     * @return number of expired keys
+     */
+    public int reap(long now, Handler<String> onExpired) {
+        if (!reaping.compareAndSet(false, true)) {
+            return 0;
+        }
+
+        int count = 0;
+
+        try {
+            // only whole slots, the current one may still have live keys
+            final long last = now / resolution - 1;
+
+            for (long slot = reaped + 1; slot <= last; slot++) {
+                // keys added to this slot from now on go to a later one (see link)
+                reaped = slot;
+
+                final Set<String> bucket = buckets.remove(slot);
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (String key : bucket) {
+                    final Deadline deadline = deadlines.get(key);
+                    // skip keys that moved meanwhile
+                    if (deadline != null && deadline.time <= now && deadlines.remove(key, deadline)) {
+                        onExpired.handle(key);
+                        count++;
+                    }
+                }
+            }
+        } finally {
+            reaping.set(false);
+        }
+
+        expired.add(count);
+        return count;
+    }
+
+    /**
+     * Number of keys with a deadline.
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Total number of keys reaped.
+     */
+    public long expired() {
+        return expired.sum();
+    }
+
+    /**
+     * Adds the key to the bucket of the slot, or of the next slot to reap when it is already reaped.
+     *
+     * @return the slot of the bucket the key was added to
+     */
+    private long link(String key, long slot) {
+        while (true) {
+            final long target = Math.max(slot, reaped + 1);
+
+            Set<String> bucket = buckets.get(target);
+            if (bucket == null) {
+                final Set<String> created = ConcurrentHashMap.newKeySet();
+                bucket = buckets.putIfAbsent(target, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+            bucket.add(key);
+
+            // reap moves past a slot before taking its bucket out, so unless it moved past this one meanwhile the
+            // bucket will be reaped with the key in it
+            if (target > reaped) {
+                return target;
+            }
+
+            bucket.remove(key);
+            if (bucket.isEmpty()) {
+                // created after it was reaped
+                buckets.remove(target, bucket);
+            }
+        }
+    }
+
+    private void unlink(String key, long slot) {
+        final Set<String> bucket = buckets.get(slot);
+        if (bucket != null) {
+            bucket.remove(key);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * # FileCache
+ *
+ * Bounded, thread safe cache of values derived from files (e.g.: file properties, precomputed headers or small file
+ * contents) keyed by the path as used by the caller.
+ *
+ * Entries are invalidated either after a fixed time to live or, when no ttl is given, by a WatchService that monitors
+ * the directories of the cached files. Invalidation by the watcher is immediate for created, modified and deleted
+ * files, and clears the whole cache if the watcher overflows. The watcher thread runs until the cache is closed.
+ *
+ * With the watcher a path must be watched before its value is cached. Watching a path checks the file system so it
+ * blocks and must not run on an event loop. A path in a missing directory (e.g.: a not found result) is watched
+ * through its nearest existing parent, the entries below a directory are dropped when it is created.
+ *
+ * When full the least recently used entries are evicted (CLOCK, see LRUCache).
+ *
+ * @param <V> the cached value
+ */
+public final class FileCache<V> {
+
+    private static final class Entry<V> extends LRUCache.CacheEntry<V, Void> {
+        private final long expires;
+
+        private Entry(V value, long expires) {
+            super(0, value);
+            this.expires = expires;
+        }
+    }
+
+    private final LRUCache<V, Void> cache;
+    private final long ttl;
+
+    // watcher state (only when ttl <= 0)
+    private final WatchService watchService;
+    private final Map<WatchKey, String> watchedDirs = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> registeredDirs = new ConcurrentHashMap<>();
+    // incremented on every invalidation so values computed before a change are not cached
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries maximum number of entries
+     * @param ttl        time to live in milliseconds, when 0 or negative a file watcher invalidates the entries
+     */
+    public FileCache(int maxEntries, long ttl) {
+        this.cache = new LRUCache<>(maxEntries);
+        this.ttl = ttl;
+
+        if (ttl <= 0) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            final Thread watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watch();
+                }
+            }, "yoke-file-cache-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            watchService = null;
+        }
+    }
+
+    /**
+     * Returns the cached value or null when not present or expired.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(@NotNull String path) {
+        final Entry<V> entry = (Entry<V>) cache.get(path);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expires != 0 && entry.expires < System.currentTimeMillis()) {
+            cache.remove(path);
+            return null;
+        }
+
+        return entry.raw;
+    }
+
+    /**
+     * Returns the current version of the cache, read it before computing a value and pass it to put.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Watches the directory of a path (or its nearest existing parent) for changes, blocking. False when it cannot be
+     * watched (e.g.: classpath resource), then its value must not be cached or it would never be invalidated.
+     */
+    public boolean watch(@NotNull String path) {
+        if (watchService == null) {
+            return true;
+        }
+
+        final int idx = path.lastIndexOf('/');
+        String dir = idx == -1 ? "" : path.substring(0, idx + 1);
+
+        while (!registeredDirs.containsKey(dir)) {
+            final Path dirPath = Paths.get(dir.length() == 0 ? "." : dir);
+
+            if (Files.isDirectory(dirPath)) {
+                return register(dir, dirPath);
+            }
+
+            if (dir.length() == 0) {
+                return false;
+            }
+
+            // missing (or a file), its creation is seen by the parent
+            final int parent = dir.lastIndexOf('/', dir.length() - 2);
+            dir = parent == -1 ? "" : dir.substring(0, parent + 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Caches a value for a path, unless some file changed since the given version was read. With the watcher the path
+     * must have been watched.
+     */
+    public void put(@NotNull String path, @NotNull V value, long version) {
+        // the least recently used entry makes room, values can always be recomputed
+        cache.put(path, new Entry<>(value, ttl > 0 ? System.currentTimeMillis() + ttl : 0));
+
+        if (this.version.get() != version) {
+            // something changed while the value was being computed
+            cache.remove(path);
+        }
+    }
+
+    /**
+     * Removes a path from the cache.
+     */
+    public void remove(@NotNull String path) {
+        cache.remove(path);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Stops the file watcher (if any) and empties the cache, nothing is cached after this call.
+     */
+    public void close() {
+        if (watchService != null) {
+            try {
+                // the watcher thread exits on ClosedWatchServiceException
+                watchService.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        cache.clear();
+    }
+
+    private boolean register(String dir, Path dirPath) {
+        try {
+            final WatchKey key = dirPath.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            watchedDirs.put(key, dir);
+            registeredDirs.put(dir, Boolean.TRUE);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    private void watch() {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            final String dir = watchedDirs.get(key);
+            version.incrementAndGet();
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    cache.clear();
+                    continue;
+                }
+
+                final String name = event.context().toString();
+                cache.remove(dir + name);
+                if (event.kind() == ENTRY_CREATE) {
+                    // a directory that was missing, the entries below it were watched through this one
+                    dropBelow(dir + name + "/");
+                }
+                // a directory and its listing change together with its children
+                if (dir.length() > 0) {
+                    cache.remove(dir);
+                    cache.remove(dir.substring(0, dir.length() - 1));
+                }
+            }
+
+            if (!key.reset()) {
+                // the directory is gone
+                watchedDirs.remove(key);
+                if (dir != null) {
+                    registeredDirs.remove(dir);
+                }
+                cache.clear();
+            }
+        }
+    }
+
+    private void dropBelow(String prefix) {
+        for (Iterator<String> it = cache.keys().iterator(); it.hasNext(); ) {
+            final String key = it.next();
+            if (key.startsWith(prefix)) {
+                cache.remove(key);
+            }
+        }
+    }
+}
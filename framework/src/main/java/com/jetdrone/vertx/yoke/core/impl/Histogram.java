@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * # Histogram
+ *
+ * Concurrent log-linear histogram (same layout as an HDR histogram with 2 significant binary digits): values below 32
+ * have their own bucket, above that every power of 2 is split in 16 buckets so any value is reported within 1/16 (~6%)
+ * of its real value. Buckets are LongAdders, recording from several event loops does not contend.
+ *
+ * Values are expected to be non negative longs, anything above 2^36 is recorded as 2^36.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE = 1L << MAX_EXPONENT;
+
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - SUB_BITS) * SUB;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) {
+            return value < 0 ? 0 : (int) value;
+        }
+
+        if (value >= MAX_VALUE) {
+            return BUCKETS - 1;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BITS;
+        // the SUB_BITS + 1 most significant bits, in [SUB, 2 * SUB)
+        final int mantissa = (int) (value >>> shift);
+
+        return LINEAR + (shift - 1) * SUB + (mantissa - SUB);
+    }
+
+    /**
+     * Highest value recorded in the given bucket.
+     */
+    static long highest(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+
+        final int shift = (index - LINEAR) / SUB + 1;
+        final long mantissa = (index - LINEAR) % SUB + SUB;
+
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public void record(long value) {
+        counts[index(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        long total = 0;
+        for (LongAdder c : counts) {
+            total += c.sum();
+        }
+        return total;
+    }
+
+    public double mean() {
+        final long total = count();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Values at the given percentiles (e.g.: 0.5, 0.99, 0.999) computed from a single pass over the buckets.
+     *
+     * @param percentiles in increasing order
+     */
+    public long[] percentiles(double... percentiles) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+
+        final long[] values = new long[percentiles.length];
+        if (total == 0) {
+            return values;
+        }
+
+        long seen = 0;
+        int p = 0;
+        for (int i = 0; i < BUCKETS && p < percentiles.length; i++) {
+            seen += snapshot[i];
+            while (p < percentiles.length && seen >= (long) Math.ceil(percentiles[p] * total)) {
+                // never report more than what was really seen
+                values[p++] = Math.min(highest(i), max());
+            }
+        }
+        return values;
+    }
+
+    public long percentile(double percentile) {
+        return percentiles(percentile)[0];
+    }
+}
@@ -3,17 +3,30 @@
  */
 package com.jetdrone.vertx.yoke.core.impl;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Double entry LRUCache
+ *
+ * Thread safe, reads never lock or mutate the map so a single cache (and the templates compiled into it) can be shared
+ * by all the verticles and worker threads using an engine. Eviction is an approximate LRU (CLOCK): entries are kept in
+ * insertion order and a read only marks the entry as referenced, when the cache is over its size or weight bound the
+ * oldest entry is evicted unless it was referenced since it was last checked, in which case it gets a second chance.
+ *
+ * Replaced and removed entries are only marked as dead, the clock skips them when they come up and drops them all at
+ * once when they outnumber the live ones, so put and remove stay O(1) amortized.
+ *
  * @param <R> Raw value (raw value is immutable)
  * @param <C> Compiled value
  */
-public class LRUCache<R, C> extends LinkedHashMap<String, LRUCache.CacheEntry<R, C>> {
-
-    private static final long serialVersionUID = 1l;
+public class LRUCache<R, C> {
 
     /**
      * Generic cache entry.
@@ -22,7 +35,14 @@ public class LRUCache<R, C> extends LinkedHashMap<String, LRUCache.CacheEntry<R,
 
         public final long lastModified;
         public final R raw;
-        public C compiled;
+        public volatile C compiled;
+
+        // CLOCK reference bit, races are harmless (at worst an entry gets one more or one less chance)
+        volatile boolean referenced;
+        // set once when the entry leaves the map, it stays in the clock until skipped or swept
+        volatile int dead;
+        String key;
+        long weight;
 
         public CacheEntry(long lastModified, R raw, C compiled) {
             this.lastModified = lastModified;
@@ -39,20 +59,200 @@ public class LRUCache<R, C> extends LinkedHashMap<String, LRUCache.CacheEntry<R,
         }
     }
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<CacheEntry> DEAD = AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "dead");
+
+    private final ConcurrentHashMap<String, CacheEntry<R, C>> map = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<CacheEntry<R, C>> clock = new ConcurrentLinkedQueue<>();
+
     private final int maxEntries;
+    private final long maxWeight;
+
+    private final AtomicLong weight = new AtomicLong();
+    // dead entries still in the clock
+    private final AtomicInteger deadEntries = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
     public LRUCache(final int maxEntries) {
-        super(maxEntries + 1, 1.0f, true);
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxEntries maximum number of entries
+     * @param maxWeight  maximum total weight, by default the length of the raw values (e.g.: template source chars)
+     */
+    public LRUCache(final int maxEntries, final long maxWeight) {
         this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Weight of an entry, override to account for the compiled value or for raw values that are not text.
+     */
+    protected long weigh(String key, CacheEntry<R, C> entry) {
+        return entry.raw instanceof CharSequence ? ((CharSequence) entry.raw).length() : 1;
+    }
+
+    public CacheEntry<R, C> get(String key) {
+        final CacheEntry<R, C> entry = map.get(key);
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        // avoid a volatile write (and the cache line invalidation) when already set
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry;
     }
 
-    @Override
-    protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry<R, C>> eldest) {
-        return super.size() > maxEntries;
+    /**
+     * Returns an entry without counting it as a use (e.g.: for maintenance tasks).
+     */
+    public CacheEntry<R, C> peek(String key) {
+        return map.get(key);
+    }
+
+    /**
+     * Caches an entry, an entry instance can only be cached once (removed entries cannot be put back).
+     */
+    public CacheEntry<R, C> put(String key, CacheEntry<R, C> entry) {
+        if (map.get(key) == entry) {
+            // already there
+            return entry;
+        }
+
+        entry.key = key;
+        entry.weight = weigh(key, entry);
+
+        final CacheEntry<R, C> previous = map.put(key, entry);
+        weight.addAndGet(entry.weight);
+        clock.offer(entry);
+
+        if (previous != null) {
+            unlink(previous);
+        }
+
+        evict();
+        return previous;
+    }
+
+    public CacheEntry<R, C> remove(String key) {
+        final CacheEntry<R, C> previous = map.remove(key);
+
+        if (previous != null) {
+            unlink(previous);
+        }
+
+        return previous;
     }
 
     public void putCompiled(String key, C compiled) {
-        CacheEntry<R, C> original = get(key);
-        original.compiled = compiled;
+        CacheEntry<R, C> original = map.get(key);
+        if (original != null) {
+            original.compiled = compiled;
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Live view of the cached keys.
+     */
+    public Set<String> keys() {
+        return map.keySet();
+    }
+
+    public void clear() {
+        for (String key : map.keySet()) {
+            remove(key);
+        }
+        sweep();
+    }
+
+    /**
+     * Total weight of the cached entries.
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Marks an entry that left the map as dead, true the first time only.
+     */
+    private boolean kill(CacheEntry<R, C> entry) {
+        if (DEAD.compareAndSet(entry, 0, 1)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private void unlink(CacheEntry<R, C> entry) {
+        // removing it from the clock is linear, leave it there and skip it later
+        if (kill(entry) && deadEntries.incrementAndGet() > map.size() + 16) {
+            sweep();
+        }
+    }
+
+    private void sweep() {
+        int removed = 0;
+        for (Iterator<CacheEntry<R, C>> it = clock.iterator(); it.hasNext(); ) {
+            if (it.next().dead != 0) {
+                it.remove();
+                removed++;
+            }
+        }
+        deadEntries.addAndGet(-removed);
+    }
+
+    private void evict() {
+        // bounded so concurrent writers cannot spin forever giving each other second chances
+        int budget = 2 * (map.size() + 1);
+
+        while ((map.size() > maxEntries || weight.get() > maxWeight) && budget-- > 0) {
+            final CacheEntry<R, C> candidate = clock.poll();
+
+            if (candidate == null) {
+                return;
+            }
+
+            if (candidate.dead != 0) {
+                // replaced or removed, its weight was already released
+                deadEntries.decrementAndGet();
+                budget++;
+                continue;
+            }
+
+            if (candidate.referenced && budget > 0) {
+                // second chance
+                candidate.referenced = false;
+                clock.offer(candidate);
+                continue;
+            }
+
+            if (kill(candidate) && map.remove(candidate.key, candidate)) {
+                evictions.increment();
+            }
+        }
     }
 }
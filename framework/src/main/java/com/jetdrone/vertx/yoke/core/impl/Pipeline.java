@@ -0,0 +1,136 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import com.jetdrone.vertx.yoke.core.MountedMiddleware;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * # Pipeline
+ *
+ * Immutable snapshot of the middleware chain. Mount points are stored in a character trie and every mount node keeps
+ * the ordered array of enabled middleware whose mount is a prefix of it. Since all mounts that are a prefix of a
+ * request path lie on the walk of that path through the trie, the deepest mount reached already holds the complete
+ * chain for the request, no per request prefix checks are needed.
+ *
+ * The enabled flag of every middleware in a chain is recorded with it, a lookup compares them against the current
+ * flags so a direct write to MountedMiddleware.enabled (which does not notify Yoke) is still detected.
+ */
+public final class Pipeline {
+
+    private static final MountedMiddleware[] EMPTY = new MountedMiddleware[0];
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        // only set on nodes where a middleware is mounted: every middleware whose mount is a prefix of this node, their
+        // enabled flags when the snapshot was built and the ones of them that were enabled
+        private MountedMiddleware[] chain;
+        private boolean[] flags;
+        private MountedMiddleware[] active;
+
+        private Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node addChild(char c) {
+            Node node = child(c);
+            if (node == null) {
+                node = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = node;
+            }
+            return node;
+        }
+    }
+
+    private final Node root = new Node();
+
+    // version of the chain this snapshot was built from
+    public final long version;
+
+    /**
+     * @param version version of the chain, read before the middleware list
+     */
+    public Pipeline(@NotNull List<MountedMiddleware> middlewareList, long version) {
+        this.version = version;
+
+        final Set<String> mounts = new LinkedHashSet<>();
+        for (MountedMiddleware mm : middlewareList) {
+            mounts.add(mm.mount);
+        }
+
+        for (String mount : mounts) {
+            Node node = root;
+            for (int i = 0; i < mount.length(); i++) {
+                node = node.addChild(mount.charAt(i));
+            }
+
+            final List<MountedMiddleware> chain = new ArrayList<>();
+            for (MountedMiddleware mm : middlewareList) {
+                if (mount.startsWith(mm.mount)) {
+                    chain.add(mm);
+                }
+            }
+
+            node.chain = chain.toArray(new MountedMiddleware[chain.size()]);
+            node.flags = new boolean[node.chain.length];
+
+            final List<MountedMiddleware> active = new ArrayList<>();
+            for (int i = 0; i < node.chain.length; i++) {
+                node.flags[i] = node.chain[i].isEnabled();
+                if (node.flags[i]) {
+                    active.add(node.chain[i]);
+                }
+            }
+            node.active = active.toArray(new MountedMiddleware[active.size()]);
+        }
+
+        if (root.chain == null) {
+            root.chain = EMPTY;
+            root.flags = new boolean[0];
+            root.active = EMPTY;
+        }
+    }
+
+    /**
+     * Returns the ordered middleware to run for a given path, or null if one of them was enabled or disabled after
+     * this snapshot was built.
+     */
+    public MountedMiddleware[] lookup(@NotNull String path) {
+        Node match = root;
+        Node node = root;
+
+        for (int i = 0; i < path.length(); i++) {
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.chain != null) {
+                match = node;
+            }
+        }
+
+        for (int i = 0; i < match.chain.length; i++) {
+            if (match.chain[i].isEnabled() != match.flags[i]) {
+                return null;
+            }
+        }
+
+        return match.active;
+    }
+}
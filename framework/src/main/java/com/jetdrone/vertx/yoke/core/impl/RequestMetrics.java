@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * # RequestMetrics
+ *
+ * Runtime counters of something that handles requests (the server, a mounted middleware, a route): requests, requests
+ * in flight, errors passed down the chain, responses by status class and a latency histogram in microseconds. All the
+ * counters are LongAdders so event loops updating the same metrics do not contend.
+ *
+ * A request *enters* and either *leaves* (passes the request on, or fails it) or *ends* it with a response.
+ */
+public final class RequestMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    // 1xx to 5xx
+    private final LongAdder[] status = new LongAdder[5];
+    private final Histogram latency = new Histogram();
+
+    public RequestMetrics() {
+        for (int i = 0; i < status.length; i++) {
+            status[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return the start time to pass to leave or end
+     */
+    public long enter() {
+        requests.increment();
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * The request was passed on without a response, with an error or not.
+     */
+    public void leave(long start, boolean error) {
+        inFlight.decrement();
+        latency.record((System.nanoTime() - start) / 1000);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * The response was sent with the given status.
+     */
+    public void end(long start, int statusCode) {
+        inFlight.decrement();
+        latency.record((System.nanoTime() - start) / 1000);
+        final int statusClass = statusCode / 100 - 1;
+        if (statusClass >= 0 && statusClass < status.length) {
+            status[statusClass].increment();
+        }
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long inFlight() {
+        return inFlight.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * @param statusClass 1 to 5 (1xx to 5xx)
+     */
+    public long responses(int statusClass) {
+        return status[statusClass - 1].sum();
+    }
+
+    public Histogram latency() {
+        return latency;
+    }
+
+    public JsonObject toJson() {
+        final long[] p = latency.percentiles(PERCENTILES);
+
+        return new JsonObject()
+                .put("requests", requests())
+                .put("inFlight", inFlight())
+                .put("errors", errors())
+                .put("responses", new JsonObject()
+                        .put("1xx", responses(1))
+                        .put("2xx", responses(2))
+                        .put("3xx", responses(3))
+                        .put("4xx", responses(4))
+                        .put("5xx", responses(5)))
+                .put("latency", new JsonObject()
+                        .put("unit", "us")
+                        .put("mean", latency.mean())
+                        .put("p50", p[0])
+                        .put("p99", p[1])
+                        .put("p999", p[2])
+                        .put("max", latency.max()));
+    }
+}
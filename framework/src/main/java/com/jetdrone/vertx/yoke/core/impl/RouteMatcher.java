@@ -0,0 +1,306 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * # RouteMatcher
+ *
+ * Index of the routes of a single HTTP verb. Simple patterns (made only of static segments and `:param` segments)
+ * are stored in a prefix tree keyed by path segment, so a lookup costs the depth of the path instead of the number
+ * of routes. Everything else (explicit regular expressions or patterns that use regular expression syntax) is kept
+ * in a list and only evaluated when the iteration reaches its position.
+ *
+ * Matches are always returned in registration order, so iterating them is equivalent to a linear scan of all routes.
+ *
+ * @param <T> the value bound to each route
+ */
+public final class RouteMatcher<T> implements Iterable<T> {
+
+    private static final Pattern PARAM = Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)");
+    private static final Pattern LITERAL = Pattern.compile("[A-Za-z0-9_\\-~%@!,;='&]*");
+
+    /**
+     * A successful match of a route against a path.
+     */
+    public static final class Match<T> {
+
+        public final T value;
+
+        private final int order;
+        private final String[] names;
+        private final String[] values;
+        private final Matcher matcher;
+
+        private Match(int order, T value, String[] names, String[] values) {
+            this.order = order;
+            this.value = value;
+            this.names = names;
+            this.values = values;
+            this.matcher = null;
+        }
+
+        private Match(int order, T value, Matcher matcher) {
+            this.order = order;
+            this.value = value;
+            this.names = null;
+            this.values = null;
+            this.matcher = matcher;
+        }
+
+        /**
+         * Returns the value captured for a named parameter.
+         */
+        public String group(@NotNull String name) {
+            if (matcher != null) {
+                return matcher.group(name);
+            }
+
+            for (int i = 0; i < names.length; i++) {
+                if (name.equals(names[i])) {
+                    return values[i];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the number of un-named groups captured by a regular expression route.
+         */
+        public int groupCount() {
+            return matcher != null ? matcher.groupCount() : 0;
+        }
+
+        /**
+         * Returns the un-named group at a given index (1 based like java.util.regex.Matcher).
+         */
+        public String group(int group) {
+            if (matcher != null) {
+                return matcher.group(group);
+            }
+
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final int order;
+        private final T value;
+        // param name per segment position, null for static segments
+        private final String[] names;
+        private final Pattern pattern;
+
+        private Entry(int order, T value, String[] names, Pattern pattern) {
+            this.order = order;
+            this.value = value;
+            this.names = names;
+            this.pattern = pattern;
+        }
+    }
+
+    private static final class Node<T> {
+        private Map<String, Node<T>> children;
+        private Node<T> param;
+        private List<Entry<T>> entries;
+
+        private Node<T> child(String segment) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            Node<T> node = children.get(segment);
+            if (node == null) {
+                node = new Node<>();
+                children.put(segment, node);
+            }
+            return node;
+        }
+
+        private Node<T> param() {
+            if (param == null) {
+                param = new Node<>();
+            }
+            return param;
+        }
+
+        private void add(Entry<T> entry) {
+            if (entries == null) {
+                entries = new ArrayList<>(1);
+            }
+            entries.add(entry);
+        }
+    }
+
+    private final Node<T> root = new Node<>();
+    private final List<Entry<T>> regexEntries = new ArrayList<>();
+    private final List<T> values = new ArrayList<>();
+
+    /**
+     * Adds a route to the matcher. When the route is a simple pattern it is added to the prefix tree, otherwise the
+     * regular expression is used.
+     *
+     * @param route the original pattern string, null when the route was registered as a regular expression
+     * @param regex the regular expression equivalent to the route
+     * @param value the value to return on a match
+     */
+    public void add(@Nullable String route, @NotNull Pattern regex, @NotNull T value) {
+        final int order = values.size();
+        values.add(value);
+
+        if (route == null || !addToTree(route, order, value)) {
+            regexEntries.add(new Entry<>(order, value, null, regex));
+        }
+    }
+
+    private boolean addToTree(String route, int order, T value) {
+        if (route.length() == 0 || route.charAt(0) != '/') {
+            return false;
+        }
+
+        final String[] segments = route.substring(1).split("/", -1);
+        final String[] names = new String[segments.length];
+
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            final Matcher m = PARAM.matcher(segment);
+            if (m.matches()) {
+                names[i] = m.group(1);
+            } else if (!LITERAL.matcher(segment).matches()) {
+                // regular expression syntax or a param that does not span the whole segment
+                return false;
+            }
+        }
+
+        Node<T> node = root;
+        for (int i = 0; i < segments.length; i++) {
+            node = names[i] != null ? node.param() : node.child(segments[i]);
+        }
+
+        final Entry<T> entry = new Entry<>(order, value, names, null);
+        node.add(entry);
+
+        // ignore tailing slash if not part of the input, same as the regular expression version
+        if (segments[segments.length - 1].length() != 0) {
+            node.child("").add(entry);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns all routes matching the given path in registration order. Regular expression routes are only evaluated
+     * when the iterator reaches them.
+     */
+    public Iterator<Match<T>> match(@NotNull final String path) {
+        final List<Match<T>> treeMatches;
+
+        if (path.length() > 0 && path.charAt(0) == '/') {
+            final String[] segments = path.substring(1).split("/", -1);
+            treeMatches = new ArrayList<>(2);
+            collect(root, segments, 0, new String[segments.length], treeMatches);
+
+            if (treeMatches.size() > 1) {
+                Collections.sort(treeMatches, new Comparator<Match<T>>() {
+                    @Override
+                    public int compare(Match<T> o1, Match<T> o2) {
+                        return Integer.compare(o1.order, o2.order);
+                    }
+                });
+            }
+        } else {
+            treeMatches = Collections.emptyList();
+        }
+
+        return new Iterator<Match<T>>() {
+
+            int tree = 0;
+            int regex = 0;
+            Match<T> next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = advance();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Match<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Match<T> match = next;
+                next = null;
+                return match;
+            }
+
+            private Match<T> advance() {
+                final int limit = tree < treeMatches.size() ? treeMatches.get(tree).order : Integer.MAX_VALUE;
+
+                // evaluate the regular expression routes registered before the next tree match
+                while (regex < regexEntries.size() && regexEntries.get(regex).order < limit) {
+                    final Entry<T> entry = regexEntries.get(regex++);
+                    final Matcher m = entry.pattern.matcher(path);
+                    if (m.matches()) {
+                        return new Match<>(entry.order, entry.value, m);
+                    }
+                }
+
+                if (tree < treeMatches.size()) {
+                    return treeMatches.get(tree++);
+                }
+
+                return null;
+            }
+        };
+    }
+
+    private void collect(Node<T> node, String[] segments, int idx, String[] captures, List<Match<T>> out) {
+        if (idx == segments.length) {
+            if (node.entries != null) {
+                for (Entry<T> entry : node.entries) {
+                    final String[] values = new String[entry.names.length];
+                    for (int i = 0; i < values.length; i++) {
+                        if (entry.names[i] != null) {
+                            values[i] = captures[i];
+                        }
+                    }
+                    out.add(new Match<>(entry.order, entry.value, entry.names, values));
+                }
+            }
+            return;
+        }
+
+        final String segment = segments[idx];
+
+        if (node.children != null) {
+            final Node<T> child = node.children.get(segment);
+            if (child != null) {
+                collect(child, segments, idx + 1, captures, out);
+            }
+        }
+
+        // params never match empty segments
+        if (node.param != null && segment.length() > 0) {
+            captures[idx] = segment;
+            collect(node.param, segments, idx + 1, captures, out);
+            captures[idx] = null;
+        }
+    }
+
+    /**
+     * Iterates all values in registration order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return values.iterator();
+    }
+}
@@ -5,6 +5,7 @@ package com.jetdrone.vertx.yoke.engine;
 
 import com.jetdrone.vertx.yoke.Engine;
 import com.jetdrone.vertx.yoke.core.impl.LRUCache;
+import com.jetdrone.vertx.yoke.jmx.CacheMBean;
 import com.jetdrone.vertx.yoke.core.YokeAsyncResult;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.AsyncResultHandler;
@@ -14,12 +15,18 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.file.FileProps;
 import io.vertx.core.file.FileSystem;
 
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+
 /**
  * # AbstractEngine
  *
  * Engine represents a Template Engine that can be registered with Yoke. Any template engine just needs to
  * extend this abstract class. The class provides access to the Vertx object so the engine might do I/O
  * operations in the context of the module.
+ *
+ * The template cache is thread safe, so a single engine instance (and the templates it compiled) can be shared by all
+ * the verticles of an application. Its statistics are exposed on JMX as com.jetdrone.yoke:type=TemplateCache.
  */
 public abstract class AbstractEngine<T> implements Engine {
 
@@ -30,6 +37,15 @@ public abstract class AbstractEngine<T> implements Engine {
     @Override
     public void setVertx(Vertx vertx) {
         this.vertx = vertx;
+
+        // register on JMX, an engine shared by several Yoke instances is only registered once
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheMBean(cache), new ObjectName("com.jetdrone.yoke:type=TemplateCache,name=" + getClass().getSimpleName() + "@" + hashCode()));
+        } catch (InstanceAlreadyExistsException e) {
+            // ignore
+        } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -5,12 +5,28 @@ package com.jetdrone.vertx.yoke.engine;
 
 import com.jetdrone.vertx.yoke.Engine;
 import com.jetdrone.vertx.yoke.core.impl.LRUCache;
+import com.jetdrone.vertx.yoke.jmx.CacheMBean;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.AsyncResultHandler;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.file.FileProps;
 import io.vertx.core.file.FileSystem;
 
-import java.util.Date;
+import javax.management.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * # AbstractEngineSync
@@ -18,6 +34,13 @@ import java.util.Date;
  * Engine represents a Template Engine that can be registered with Yoke. Any template engine just needs to
  * extend this abstract class. The class provides access to the Vertx object so the engine might do I/O
  * operations in the context of the module.
+ *
+ * The template cache is thread safe, so a single engine instance (and the templates it compiled) can be shared by all
+ * the verticles of an application. Its statistics are exposed on JMX as com.jetdrone.yoke:type=TemplateCache.
+ *
+ * By default every render checks the template file modification date with a blocking call. In production mode the
+ * templates are loaded and compiled when the engine is registered, renders never touch the file system and modified
+ * templates are reloaded by a periodic asynchronous scan.
  */
 public abstract class AbstractEngineSync<T> implements Engine {
 
@@ -25,9 +48,82 @@ public abstract class AbstractEngineSync<T> implements Engine {
 
     private final LRUCache<String, T> cache = new LRUCache<>(1024);
 
+    private boolean production;
+    private long scanInterval;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    // the template a worker is compiling, visible to its own reads before it is published to the cache
+    private final ThreadLocal<Pending<T>> pending = new ThreadLocal<>();
+
+    private static final class Pending<T> {
+        final String filename;
+        final LRUCache.CacheEntry<String, T> entry;
+
+        Pending(String filename, LRUCache.CacheEntry<String, T> entry) {
+            this.filename = filename;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Enables production mode: all templates under views() are loaded and compiled on registration, renders do not
+     * check the file system for changes and a background task checks the cached templates every scanInterval.
+     *
+     * <pre>
+     * yoke.engine(new HandlebarsEngine("views").production(5000));
+     * </pre>
+     *
+     * @param scanInterval milliseconds between checks for modified templates, 0 to never reload
+     * @return self
+     */
+    public AbstractEngineSync<T> production(long scanInterval) {
+        this.production = true;
+        this.scanInterval = scanInterval;
+        return this;
+    }
+
+    /**
+     * Directory of the templates, used to preload them in production mode. null when unknown.
+     */
+    protected String views() {
+        return null;
+    }
+
+    /**
+     * Compiles a template, the default implementation does not compile (only the raw template is cached).
+     *
+     * @param filename template name relative to views(), as given to render
+     */
+    protected T compile(String filename) throws Exception {
+        return null;
+    }
+
     @Override
     public void setVertx(Vertx vertx) {
         this.vertx = vertx;
+
+        // an engine shared by several Yoke instances is only preloaded and scanned once
+        if (production && started.compareAndSet(false, true)) {
+            preload();
+
+            if (scanInterval > 0) {
+                vertx.setPeriodic(scanInterval, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        scan();
+                    }
+                });
+            }
+        }
+
+        // register on JMX, an engine shared by several Yoke instances is only registered once
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheMBean(cache), new ObjectName("com.jetdrone.yoke:type=TemplateCache,name=" + getClass().getSimpleName() + "@" + hashCode()));
+        } catch (InstanceAlreadyExistsException e) {
+            // ignore
+        } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -46,6 +142,11 @@ public abstract class AbstractEngineSync<T> implements Engine {
      * @param filename File to look for
      */
     public boolean isFresh(final String filename) {
+        if (production) {
+            // changes are tracked by the background scan
+            return cache.get(filename) != null;
+        }
+
         final FileSystem fileSystem = vertx.fileSystem();
 
         try {
@@ -73,6 +174,11 @@ public abstract class AbstractEngineSync<T> implements Engine {
      * @param filename File to look for
      */
     public long lastModified(final String filename) {
+        final Pending<T> loading = pending.get();
+        if (loading != null && loading.filename.equals(filename)) {
+            return loading.entry.lastModified;
+        }
+
         LRUCache.CacheEntry<String, T> cacheEntry = cache.get(filename);
         if (cacheEntry == null) {
             return -1;
@@ -93,6 +199,121 @@ public abstract class AbstractEngineSync<T> implements Engine {
         }
     }
 
+    /**
+     * Loads and compiles a template, the raw and compiled values are published together so a render never sees a
+     * template that is not compiled yet. If the compilation fails the previous version (if any) is kept.
+     */
+    private void loadAndCompile(final String filename, final String root) {
+        final FileSystem fileSystem = vertx.fileSystem();
+
+        if (!fileSystem.existsBlocking(filename)) {
+            return;
+        }
+
+        final long lastModified = fileSystem.propsBlocking(filename).lastModifiedTime();
+        final String raw = fileSystem.readFileBlocking(filename).toString(contentEncoding());
+
+        if (!filename.startsWith(root)) {
+            cache.put(filename, new LRUCache.CacheEntry<String, T>(lastModified, raw));
+            return;
+        }
+
+        final T compiled;
+
+        // the template loaders read through the cache, let them see the new content before it is published
+        pending.set(new Pending<>(filename, new LRUCache.CacheEntry<String, T>(lastModified, raw)));
+        try {
+            compiled = compile(filename.substring(root.length()));
+        } catch (Exception e) {
+            // leave it to the render to report
+            return;
+        } finally {
+            pending.remove();
+        }
+
+        cache.put(filename, new LRUCache.CacheEntry<>(lastModified, raw, compiled));
+    }
+
+    /**
+     * Loads and compiles all the templates found under views().
+     */
+    private void preload() {
+        final String root = views();
+
+        if (root == null) {
+            return;
+        }
+
+        final Path dir = Paths.get(root.length() == 0 ? "." : root);
+
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        final List<String> files = new ArrayList<>();
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            final Iterator<Path> it = paths.iterator();
+            while (it.hasNext()) {
+                final Path path = it.next();
+                final String name = dir.relativize(path).toString().replace(File.separatorChar, '/');
+                if (name.endsWith(extension()) && Files.isRegularFile(path)) {
+                    files.add(root + name);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        for (String filename : files) {
+            loadAndCompile(filename, root);
+        }
+    }
+
+    /**
+     * Checks the modification date of all cached templates without blocking, changed templates are reloaded and
+     * recompiled in a worker thread while the previous version keeps being served.
+     */
+    private void scan() {
+        final FileSystem fileSystem = vertx.fileSystem();
+
+        for (final String filename : cache.keys()) {
+            final LRUCache.CacheEntry<String, T> cacheEntry = cache.peek(filename);
+
+            if (cacheEntry == null) {
+                continue;
+            }
+
+            fileSystem.props(filename, new AsyncResultHandler<FileProps>() {
+                @Override
+                public void handle(AsyncResult<FileProps> asyncResult) {
+                    if (asyncResult.failed()) {
+                        // gone
+                        cache.remove(filename);
+                    } else if (!cacheEntry.isFresh(asyncResult.result().lastModifiedTime())) {
+                        reload(filename);
+                    }
+                }
+            });
+        }
+    }
+
+    private void reload(final String filename) {
+        final String root = views();
+
+        vertx.executeBlocking(new Handler<Future<Void>>() {
+            @Override
+            public void handle(Future<Void> future) {
+                if (root != null) {
+                    loadAndCompile(filename, root);
+                } else {
+                    loadToCache(filename);
+                }
+                future.complete();
+            }
+        }, false, null);
+    }
+
     /**
      * Loads a resource from the filesystem into a string.
      *
@@ -101,6 +322,11 @@ public abstract class AbstractEngineSync<T> implements Engine {
      * returns the string or the cached value
      */
     public String read(final String filename) {
+        final Pending<T> loading = pending.get();
+        if (loading != null && loading.filename.equals(filename)) {
+            return loading.entry.raw;
+        }
+
         if (isFresh(filename)) {
             String cachedValue = getFileFromCache(filename);
             if (cachedValue != null) {
@@ -9,14 +9,59 @@ import io.vertx.core.AsyncResultHandler;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * # StringPlaceholderEngine
+ *
+ * Templates are compiled once (per file modification) into a list of UTF-8 encoded literal chunks and placeholders, so
+ * rendering only resolves the placeholders and copies bytes into a presized buffer.
  */
-public class StringPlaceholderEngine extends AbstractEngine<String> {
+public class StringPlaceholderEngine extends AbstractEngine<StringPlaceholderEngine.Template> {
+
+    /**
+     * A template split into literal and placeholder segments, only created by the engine.
+     */
+    public static final class Template {
+        // either byte[] (literal) or Placeholder
+        final Object[] segments;
+        final int literalLength;
+
+        Template(Object[] segments, int literalLength) {
+            this.segments = segments;
+            this.literalLength = literalLength;
+        }
+    }
+
+    private static final class Placeholder {
+        // the placeholder as written, kept when it cannot be resolved
+        final byte[] raw;
+        // the text between the delimiters
+        final String key;
+        // the key contains placeholders itself and must be resolved on each render
+        final boolean nested;
+        // function call syntax: name and arguments
+        final String fnName;
+        final Object[] fnArgs;
+
+        Placeholder(String raw, String key) {
+            this.raw = raw.getBytes(StandardCharsets.UTF_8);
+            this.key = key;
+            this.nested = key.contains(placeholderPrefix);
+
+            Matcher fn = nested ? null : FUNCTION.matcher(key);
+            if (fn != null && fn.find()) {
+                fnName = fn.group(1);
+                fnArgs = parseArguments(fn.group(2));
+            } else {
+                fnName = null;
+                fnArgs = null;
+            }
+        }
+    }
 
     private static final String placeholderPrefix = "${";
     private static final String placeholderSuffix = "}";
@@ -79,7 +124,14 @@ public class StringPlaceholderEngine extends AbstractEngine<String> {
                     handler.handle(new YokeAsyncResult<Buffer>(asyncResult.cause()));
                 } else {
                     try {
-                        handler.handle(new YokeAsyncResult<>(parseStringValue(asyncResult.result(), context, new HashSet<String>())));
+                        Template template = getTemplateFromCache(prefix + file);
+
+                        if (template == null) {
+                            template = compile(asyncResult.result());
+                            putTemplateToCache(prefix + file, template);
+                        }
+
+                        handler.handle(new YokeAsyncResult<>(render(template, context)));
                     } catch (IllegalArgumentException iae) {
                         handler.handle(new YokeAsyncResult<Buffer>(iae));
                     }
@@ -88,6 +140,156 @@ public class StringPlaceholderEngine extends AbstractEngine<String> {
         });
     }
     
+    /**
+     * Splits a template in literal and placeholder segments. The split does not depend on the context since the
+     * interpreter never rescans the text it substitutes as part of the outer template.
+     */
+    static Template compile(String template) {
+        final List<Object> segments = new ArrayList<>();
+        int literalLength = 0;
+        int literalStart = 0;
+
+        int startIndex = template.indexOf(placeholderPrefix);
+        while (startIndex != -1) {
+            int endIndex = findPlaceholderEndIndex(template, startIndex);
+            if (endIndex == -1) {
+                break;
+            }
+
+            if (startIndex > literalStart) {
+                final byte[] literal = template.substring(literalStart, startIndex).getBytes(StandardCharsets.UTF_8);
+                segments.add(literal);
+                literalLength += literal.length;
+            }
+
+            segments.add(new Placeholder(
+                    template.substring(startIndex, endIndex + placeholderSuffix.length()),
+                    template.substring(startIndex + placeholderPrefix.length(), endIndex)));
+
+            literalStart = endIndex + placeholderSuffix.length();
+            startIndex = template.indexOf(placeholderPrefix, literalStart);
+        }
+
+        if (literalStart < template.length()) {
+            final byte[] literal = template.substring(literalStart).getBytes(StandardCharsets.UTF_8);
+            segments.add(literal);
+            literalLength += literal.length;
+        }
+
+        return new Template(segments.toArray(), literalLength);
+    }
+
+    private Buffer render(Template template, Map<String, Object> context) {
+        final Buffer buffer = Buffer.buffer(template.literalLength + 16 * template.segments.length);
+
+        for (Object segment : template.segments) {
+            if (segment instanceof byte[]) {
+                buffer.appendBytes((byte[]) segment);
+                continue;
+            }
+
+            final Placeholder placeholder = (Placeholder) segment;
+
+            if (placeholder.nested) {
+                // dynamic key, use the interpreter for this placeholder only
+                final Set<String> visitedPlaceholders = new HashSet<>();
+                visitedPlaceholders.add(placeholder.key);
+                final String key = parseStringValue(placeholder.key, context, visitedPlaceholders).toString(contentEncoding());
+                final String value = resolve(key, context, visitedPlaceholders);
+
+                if (value != null) {
+                    buffer.appendString(value);
+                } else if (ignoreUnresolvablePlaceholders) {
+                    buffer.appendBytes(placeholder.raw);
+                } else {
+                    throw new IllegalArgumentException("Could not resolve placeholder '" + key + "'");
+                }
+                continue;
+            }
+
+            final Object propVal = context.get(placeholder.fnName != null ? placeholder.fnName : placeholder.key);
+
+            if (propVal == null) {
+                if (ignoreUnresolvablePlaceholders) {
+                    buffer.appendBytes(placeholder.raw);
+                    continue;
+                }
+                throw new IllegalArgumentException("Could not resolve placeholder '" + placeholder.key + "'");
+            }
+
+            final String propValStr;
+            if (placeholder.fnName != null && propVal instanceof Function) {
+                if (placeholder.fnArgs == null) {
+                    propValStr = ((Function) propVal).exec(context);
+                } else {
+                    propValStr = ((Function) propVal).exec(context, placeholder.fnArgs.clone());
+                }
+            } else {
+                propValStr = propVal.toString();
+            }
+
+            if (propValStr.contains(placeholderPrefix)) {
+                // the value has placeholders of its own
+                final Set<String> visitedPlaceholders = new HashSet<>();
+                visitedPlaceholders.add(placeholder.key);
+                buffer.appendBuffer(parseStringValue(propValStr, context, visitedPlaceholders));
+            } else {
+                buffer.appendString(propValStr);
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Resolves a key to its (fully substituted) value, null when not in the context.
+     */
+    private String resolve(String placeholder, Map<String, Object> context, Set<String> visitedPlaceholders) {
+        Object propVal;
+        boolean isFn = false;
+
+        Matcher fn = FUNCTION.matcher(placeholder);
+        if (fn.find()) {
+            // function syntax used, get the object from context with the proper name
+            propVal = context.get(fn.group(1));
+            isFn = true;
+        } else {
+            propVal = context.get(placeholder);
+        }
+
+        if (propVal == null) {
+            return null;
+        }
+
+        String propValStr;
+        if (isFn && propVal instanceof Function) {
+            Object[] args = parseArguments(fn.group(2));
+            if (args == null) {
+                propValStr = ((Function) propVal).exec(context);
+            } else {
+                propValStr = ((Function) propVal).exec(context, args);
+            }
+        } else {
+            propValStr = propVal.toString();
+        }
+
+        return parseStringValue(propValStr, context, visitedPlaceholders).toString(contentEncoding());
+    }
+
+    private static Object[] parseArguments(String arguments) {
+        Matcher arg = ARG.matcher(arguments);
+        List<Object> args = null;
+
+        while (arg.find()) {
+            if (args == null) {
+                args = new ArrayList<>();
+            }
+            args.add(arg.group(1));
+        }
+
+        return args == null ? null : args.toArray();
+    }
+
     private Buffer parseStringValue(String template, Map<String, Object> context, Set<String> visitedPlaceholders) {
         StringBuilder buf = new StringBuilder(template);
 
@@ -0,0 +1,92 @@
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.core.impl.LRUCache;
+
+import javax.management.*;
+
+public final class CacheMBean implements DynamicMBean {
+
+    private final LRUCache<?, ?> cache;
+
+    public CacheMBean(LRUCache<?, ?> cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        switch (name) {
+            case "size":
+                return cache.size();
+            case "weight":
+                return cache.weight();
+            case "hits":
+                return cache.hits();
+            case "misses":
+                return cache.misses();
+            case "evictions":
+                return cache.evictions();
+            case "hitRatio":
+                final long hits = cache.hits();
+                final long total = hits + cache.misses();
+                return total == 0 ? 0.0 : (double) hits / total;
+            default:
+                throw new AttributeNotFoundException("No such property: " + name);
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+        throw new MBeanException(new UnsupportedOperationException());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // ignore
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String name, Object[] args, String[] sig) throws MBeanException, ReflectionException {
+        if ("clear".equals(name)) {
+            cache.clear();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(name));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attrs = {
+                new MBeanAttributeInfo("size", "java.lang.Integer", "Number of cached entries", true, false, false),
+                new MBeanAttributeInfo("weight", "java.lang.Long", "Total weight of the cached entries", true, false, false),
+                new MBeanAttributeInfo("hits", "java.lang.Long", "Lookups that found an entry", true, false, false),
+                new MBeanAttributeInfo("misses", "java.lang.Long", "Lookups that did not find an entry", true, false, false),
+                new MBeanAttributeInfo("evictions", "java.lang.Long", "Entries evicted to respect the bounds", true, false, false),
+                new MBeanAttributeInfo("hitRatio", "java.lang.Double", "Hits over total lookups", true, false, false)
+        };
+
+        MBeanOperationInfo[] ops = {
+                new MBeanOperationInfo("clear", "Removes all entries", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+        };
+
+        return new MBeanInfo(
+                this.getClass().getName(),
+                "Template Cache MBean",
+                attrs,
+                null,   // constructors
+                ops,    // operations
+                null);  // notifications
+    }
+}
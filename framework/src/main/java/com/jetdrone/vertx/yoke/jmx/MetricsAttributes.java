@@ -0,0 +1,81 @@
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.core.impl.RequestMetrics;
+
+import javax.management.MBeanAttributeInfo;
+
+/**
+ * Read only JMX attributes of a RequestMetrics, shared by the MBeans that expose runtime numbers.
+ */
+final class MetricsAttributes {
+
+    private MetricsAttributes() {}
+
+    static final MBeanAttributeInfo[] INFO = {
+            new MBeanAttributeInfo("requests", "java.lang.Long", "Requests received", true, false, false),
+            new MBeanAttributeInfo("inFlight", "java.lang.Long", "Requests being handled", true, false, false),
+            new MBeanAttributeInfo("errors", "java.lang.Long", "Requests failed with an error", true, false, false),
+            new MBeanAttributeInfo("responses1xx", "java.lang.Long", "Responses with a 1xx status", true, false, false),
+            new MBeanAttributeInfo("responses2xx", "java.lang.Long", "Responses with a 2xx status", true, false, false),
+            new MBeanAttributeInfo("responses3xx", "java.lang.Long", "Responses with a 3xx status", true, false, false),
+            new MBeanAttributeInfo("responses4xx", "java.lang.Long", "Responses with a 4xx status", true, false, false),
+            new MBeanAttributeInfo("responses5xx", "java.lang.Long", "Responses with a 5xx status", true, false, false),
+            new MBeanAttributeInfo("latencyMean", "java.lang.Double", "Mean latency in microseconds", true, false, false),
+            new MBeanAttributeInfo("latencyP50", "java.lang.Long", "Median latency in microseconds", true, false, false),
+            new MBeanAttributeInfo("latencyP99", "java.lang.Long", "99th percentile latency in microseconds", true, false, false),
+            new MBeanAttributeInfo("latencyP999", "java.lang.Long", "99.9th percentile latency in microseconds", true, false, false),
+            new MBeanAttributeInfo("latencyMax", "java.lang.Long", "Maximum latency in microseconds", true, false, false)
+    };
+
+    static boolean has(String name) {
+        for (MBeanAttributeInfo info : INFO) {
+            if (info.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the value or null if the name is not a metrics attribute
+     */
+    static Object get(RequestMetrics metrics, String name) {
+        switch (name) {
+            case "requests":
+                return metrics.requests();
+            case "inFlight":
+                return metrics.inFlight();
+            case "errors":
+                return metrics.errors();
+            case "responses1xx":
+                return metrics.responses(1);
+            case "responses2xx":
+                return metrics.responses(2);
+            case "responses3xx":
+                return metrics.responses(3);
+            case "responses4xx":
+                return metrics.responses(4);
+            case "responses5xx":
+                return metrics.responses(5);
+            case "latencyMean":
+                return metrics.latency().mean();
+            case "latencyP50":
+                return metrics.latency().percentile(0.5);
+            case "latencyP99":
+                return metrics.latency().percentile(0.99);
+            case "latencyP999":
+                return metrics.latency().percentile(0.999);
+            case "latencyMax":
+                return metrics.latency().max();
+            default:
+                return null;
+        }
+    }
+
+    static MBeanAttributeInfo[] concat(MBeanAttributeInfo[] attrs) {
+        final MBeanAttributeInfo[] all = new MBeanAttributeInfo[attrs.length + INFO.length];
+        System.arraycopy(attrs, 0, all, 0, attrs.length);
+        System.arraycopy(INFO, 0, all, attrs.length, INFO.length);
+        return all;
+    }
+}
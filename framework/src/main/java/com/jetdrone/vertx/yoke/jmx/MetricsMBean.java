@@ -0,0 +1,62 @@
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.core.impl.RequestMetrics;
+
+import javax.management.*;
+
+public final class MetricsMBean implements DynamicMBean {
+
+    private final RequestMetrics metrics;
+
+    public MetricsMBean(RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        final Object value = MetricsAttributes.get(metrics, name);
+        if (value == null) {
+            throw new AttributeNotFoundException("No such property: " + name);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+        throw new MBeanException(new UnsupportedOperationException());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // ignore
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String name, Object[] args, String[] sig) throws MBeanException, ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(name));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return new MBeanInfo(
+                this.getClass().getName(),
+                "Request Metrics MBean",
+                MetricsAttributes.INFO,
+                null,   // constructors
+                null,   // operations
+                null);  // notifications
+    }
+}
@@ -20,9 +20,13 @@ public final class MiddlewareMBean implements DynamicMBean {
             case "type":
                 return middleware.middleware.getClass().getName();
             case "enabled":
-                return middleware.enabled;
+                return middleware.isEnabled();
             default:
-                throw new AttributeNotFoundException("No such property: " + name);
+                final Object value = MetricsAttributes.get(middleware.metrics, name);
+                if (value == null) {
+                    throw new AttributeNotFoundException("No such property: " + name);
+                }
+                return value;
         }
     }
 
@@ -31,7 +35,7 @@ public final class MiddlewareMBean implements DynamicMBean {
         try {
             switch (attribute.getName()) {
                 case "enabled":
-                    middleware.enabled = (Boolean) attribute.getValue();
+                    middleware.setEnabled((Boolean) attribute.getValue());
                     break;
                 default:
                     throw new AttributeNotFoundException("No such property: " + attribute.getName());
@@ -56,6 +60,11 @@ public final class MiddlewareMBean implements DynamicMBean {
                     case "enabled":
                         list.add(new Attribute("enabled", getAttribute(name)));
                         break;
+                    default:
+                        if (MetricsAttributes.has(name)) {
+                            list.add(new Attribute(name, getAttribute(name)));
+                        }
+                        break;
                 }
             }catch (AttributeNotFoundException e) {
                 // ignore
@@ -103,7 +112,7 @@ public final class MiddlewareMBean implements DynamicMBean {
         return new MBeanInfo(
                 this.getClass().getName(),
                 "Middleware Manager MBean",
-                attrs,
+                MetricsAttributes.concat(attrs),
                 null,   // constructors
                 null,   // operations
                 null);  // notifications
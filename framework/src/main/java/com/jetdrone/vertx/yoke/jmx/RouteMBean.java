@@ -2,6 +2,7 @@ package com.jetdrone.vertx.yoke.jmx;
 
 import com.jetdrone.vertx.yoke.IMiddleware;
 import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.core.impl.RequestMetrics;
 
 import javax.management.*;
 import java.util.List;
@@ -11,11 +12,13 @@ import java.util.regex.Pattern;
 public final class RouteMBean implements DynamicMBean {
 
     private final List<IMiddleware> middleware;
+    private final RequestMetrics metrics;
 
     private final Pattern middlewarePattern = Pattern.compile("middleware\\[(\\d+)\\]");
 
-    public RouteMBean(List<IMiddleware> middleware) {
+    public RouteMBean(List<IMiddleware> middleware, RequestMetrics metrics) {
         this.middleware = middleware;
+        this.metrics = metrics;
     }
 
     @Override
@@ -25,6 +28,11 @@ public final class RouteMBean implements DynamicMBean {
             return middleware.get(Integer.parseInt(m.group(1))).getClass().getName();
         }
 
+        final Object value = MetricsAttributes.get(metrics, name);
+        if (value != null) {
+            return value;
+        }
+
         throw new AttributeNotFoundException("No such property: " + name);
     }
 
@@ -82,6 +90,6 @@ public final class RouteMBean implements DynamicMBean {
                     false);
         }
 
-        return attrs;
+        return MetricsAttributes.concat(attrs);
     }
 }
@@ -0,0 +1,85 @@
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.core.impl.ExpiringKeys;
+import io.vertx.core.shareddata.LocalMap;
+
+import javax.management.*;
+
+public final class SessionStoreMBean implements DynamicMBean {
+
+    private final LocalMap<String, String> storage;
+    private final ExpiringKeys expiry;
+
+    public SessionStoreMBean(LocalMap<String, String> storage, ExpiringKeys expiry) {
+        this.storage = storage;
+        this.expiry = expiry;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        switch (name) {
+            case "size":
+                return storage.size();
+            case "expiring":
+                return expiry.size();
+            case "expired":
+                return expiry.expired();
+            default:
+                throw new AttributeNotFoundException("No such property: " + name);
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+        throw new MBeanException(new UnsupportedOperationException());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // ignore
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String name, Object[] args, String[] sig) throws MBeanException, ReflectionException {
+        if ("clear".equals(name)) {
+            storage.clear();
+            expiry.clear();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(name));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attrs = {
+                new MBeanAttributeInfo("size", "java.lang.Integer", "Number of stored sessions", true, false, false),
+                new MBeanAttributeInfo("expiring", "java.lang.Integer", "Sessions with an expiration", true, false, false),
+                new MBeanAttributeInfo("expired", "java.lang.Long", "Sessions removed because they expired", true, false, false)
+        };
+
+        MBeanOperationInfo[] ops = {
+                new MBeanOperationInfo("clear", "Removes all sessions", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+        };
+
+        return new MBeanInfo(
+                this.getClass().getName(),
+                "Session Store MBean",
+                attrs,
+                null,   // constructors
+                ops,    // operations
+                null);  // notifications
+    }
+}
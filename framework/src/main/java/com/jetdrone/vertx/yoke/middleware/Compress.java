@@ -4,13 +4,12 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
-import com.jetdrone.vertx.yoke.middleware.filters.DeflateWriterFilter;
-import com.jetdrone.vertx.yoke.middleware.filters.GZipWriterFilter;
+import com.jetdrone.vertx.yoke.middleware.filters.DeflateStreamingWriterFilter;
+import com.jetdrone.vertx.yoke.middleware.filters.GZipStreamingWriterFilter;
 import io.vertx.core.http.HttpMethod;
 import org.jetbrains.annotations.NotNull;
 import io.vertx.core.Handler;
 
-import java.io.IOException;
 import java.util.regex.Pattern;
 
 /**
@@ -22,6 +21,9 @@ import java.util.regex.Pattern;
  *
  * You can specify which content types are compressable and by default json/text/javascript
  * are enabled.
+ *
+ * Compression is streamed, compressed chunks are written to the response as they fill up so large responses are not
+ * held in memory.
  */
 public class Compress extends Middleware {
 
@@ -68,20 +70,16 @@ public class Compress extends Middleware {
             return;
         }
 
-        try {
-            // default to gzip
-            if ("*".equals(accept.trim())) {
-                response.setFilter(new GZipWriterFilter(filter));
-            } else {
-                if (accept.contains("gzip")) {
-                    response.setFilter(new GZipWriterFilter(filter));
-                } else if (accept.contains("deflate")) {
-                    response.setFilter(new DeflateWriterFilter(filter));
-                }
+        // default to gzip
+        if ("*".equals(accept.trim())) {
+            response.setFilter(new GZipStreamingWriterFilter(filter));
+        } else {
+            if (accept.contains("gzip")) {
+                response.setFilter(new GZipStreamingWriterFilter(filter));
+            } else if (accept.contains("deflate")) {
+                response.setFilter(new DeflateStreamingWriterFilter(filter));
             }
-            next.handle(null);
-        } catch (IOException ioe) {
-            next.handle(ioe);
         }
+        next.handle(null);
     }
 }
@@ -4,15 +4,11 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
-import com.jetdrone.vertx.yoke.core.YokeCookie;
-import io.netty.handler.codec.http.Cookie;
-import io.netty.handler.codec.http.CookieDecoder;
+import com.jetdrone.vertx.yoke.core.impl.CookieJar;
 import org.jetbrains.annotations.NotNull;
 import io.vertx.core.Handler;
 
 import javax.crypto.Mac;
-import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * # CookieParser
@@ -23,6 +19,9 @@ import java.util.TreeSet;
  * *s:&lt;cookie&gt;.&lt;signature&gt;*. The signature is *HMAC + SHA256*.
  *
  * When the Cookie parser is initialized with a secret then that value is used to verify if a cookie is valid.
+ *
+ * Parsing is lazy, the header is only indexed when a cookie is first requested and only the requested cookies are
+ * decoded and verified. A signed cookie that fails verification is reported as missing instead of failing the request.
  */
 public class CookieParser extends Middleware {
 
@@ -62,22 +61,8 @@ public class CookieParser extends Middleware {
         String cookieHeader = request.getHeader("cookie");
 
         if (cookieHeader != null) {
-            Set<Cookie> nettyCookies = CookieDecoder.decode(cookieHeader);
-            Set<YokeCookie> cookies = new TreeSet<>();
-
-            for (Cookie cookie : nettyCookies) {
-                YokeCookie yokeCookie = new YokeCookie(cookie, mac);
-                String value = yokeCookie.getUnsignedValue();
-                // value cannot be null in a cookie if the signature is mismatch then this value will be null
-                // in that case the cookie has been tampered
-                if (value == null) {
-                    next.handle(400);
-                    return;
-                }
-                cookies.add(yokeCookie);
-            }
-
-            request.setCookies(cookies);
+            // cookies are only decoded (and verified) when requested
+            request.setCookies(new CookieJar(cookieHeader, mac));
         }
 
         next.handle(null);
@@ -4,6 +4,8 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.core.AsyncLogAppender;
+import com.jetdrone.vertx.yoke.core.ServerTiming;
 import com.jetdrone.vertx.yoke.core.impl.ThreadLocalUTCDateFormat;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.logging.LoggerFactory;
@@ -25,6 +27,13 @@ import java.util.Date;
  * The logging depends on Vert.x logger settings and the severity of the error, so for errors with status greater or
  * equal to 500 the fatal severity is used, for status greater or equal to 400 the error severity is used, for status
  * greater or equal to 300 warn is used and for status above 100 info is used.
+ *
+ * Durations are measured with the monotonic clock and logged in milliseconds with microsecond resolution. Lines are
+ * built in a per thread buffer and the date is formatted once per second, so logging a request does not allocate
+ * more than the final message.
+ *
+ * The Vert.x logger writes on the event loop, for busy servers pass an AsyncLogAppender so lines are written to a file
+ * in batches by a background thread (with size/time rotation), the severity is then not used.
  */
 public class Logger extends Middleware {
 
@@ -51,13 +60,27 @@ public class Logger extends Middleware {
      */
     private final Format format;
 
-    public Logger(final boolean immediate, @NotNull Format format) {
+    /** when set lines go to this file instead of the Vert.x logger
+     */
+    private final AsyncLogAppender appender;
+
+    /**
+     * Logs to a file through an AsyncLogAppender, the event loop only queues the line and never waits for the disk.
+     *
+     * @param appender the file appender, it is not closed by the middleware
+     */
+    public Logger(final boolean immediate, @NotNull Format format, AsyncLogAppender appender) {
         this.immediate = immediate;
         this.format = format;
+        this.appender = appender;
 
         ISODATE = new ThreadLocalUTCDateFormat();
     }
 
+    public Logger(final boolean immediate, @NotNull Format format) {
+        this(immediate, format, null);
+    }
+
     public Logger(@NotNull Format format) {
         this(false, format);
     }
@@ -84,65 +107,103 @@ public class Logger extends Middleware {
         return inetSocketAddress.host();
     }
 
-    private void log(YokeRequest request, long timestamp, final String remoteClient, final String version, final String method, final String uri) {
-        long contentLength = 0;
+    // a UTC date truncated to the second, shared by all the requests logged during that second
+    private static final class DatePrefix {
+        private final long second;
+        private final String text;
+
+        private DatePrefix(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private volatile DatePrefix datePrefix = new DatePrefix(-1, null);
+
+    private static final int MAX_BUFFER = 4096;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private static StringBuilder buffer() {
+        StringBuilder sb = BUFFER.get();
+        // do not keep huge buffers around because of a single long uri
+        if (sb.capacity() > MAX_BUFFER) {
+            sb = new StringBuilder(256);
+            BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * Appends the timestamp in the ISODATE format, the date is only formatted once per second.
+     */
+    private void appendDate(StringBuilder sb, long timestamp) {
+        final long second = timestamp / 1000;
+        DatePrefix prefix = datePrefix;
+
+        if (prefix.second != second) {
+            // yyyy-MM-ddTHH:mm:ss
+            prefix = new DatePrefix(second, ISODATE.format(new Date(second * 1000)).substring(0, 19));
+            datePrefix = prefix;
+        }
+
+        final int millis = (int) (timestamp % 1000);
+        sb.append(prefix.text).append('.');
+        if (millis < 100) {
+            sb.append('0');
+        }
+        if (millis < 10) {
+            sb.append('0');
+        }
+        sb.append(millis).append('Z');
+    }
+
+    private void log(YokeRequest request, long timestamp, long start, final String remoteClient, final String version, final String method, final String uri) {
+        final String contentLength;
         if (immediate) {
-            Object obj = request.getHeader("content-length");
-            if (obj != null) {
-                contentLength = Long.parseLong(obj.toString());
-            }
+            contentLength = request.getHeader("content-length");
         } else {
-            Object obj = request.response().getHeader("content-length");
-            if (obj != null) {
-                contentLength = Long.parseLong(obj.toString());
-            }
+            contentLength = request.response().getHeader("content-length");
         }
 
-        int status = request.response().getStatusCode();
-        String message = null;
+        final int status = request.response().getStatusCode();
+        final StringBuilder sb = buffer();
 
         switch (format) {
             case DEFAULT:
-                Object referrer = request.getHeader("referrer", "");
-                Object userAgent = request.getHeader("user-agent", "");
-
-                message = String.format("%s - - [%s] \"%s %s %s\" %d %d \"%s\" \"%s\"",
-                        remoteClient,
-                        ISODATE.format(new Date(timestamp)),
-                        method,
-                        uri,
-                        version,
-                        status,
-                        contentLength,
-                        referrer,
-                        userAgent);
+                sb.append(remoteClient).append(" - - [");
+                appendDate(sb, timestamp);
+                sb.append("] \"").append(method).append(' ').append(uri).append(' ').append(version).append("\" ")
+                        .append(status).append(' ').append(contentLength == null ? "0" : contentLength)
+                        .append(" \"").append(request.getHeader("referrer", "")).append("\" \"")
+                        .append(request.getHeader("user-agent", "")).append('"');
                 break;
             case SHORT:
-                message = String.format("%s - %s %s %s %d %d - %d ms",
-                        remoteClient,
-                        method,
-                        uri,
-                        version,
-                        status,
-                        contentLength,
-                        (System.currentTimeMillis() - timestamp));
+                sb.append(remoteClient).append(" - ").append(method).append(' ').append(uri).append(' ').append(version).append(' ')
+                        .append(status).append(' ').append(contentLength == null ? "0" : contentLength).append(" - ");
+                ServerTiming.appendMillis(sb, (System.nanoTime() - start) / 1000).append(" ms");
                 break;
             case TINY:
-                message = String.format("%s %s %d %d - %d ms",
-                        method,
-                        uri,
-                        status,
-                        contentLength,
-                        (System.currentTimeMillis() - timestamp));
+                sb.append(method).append(' ').append(uri).append(' ')
+                        .append(status).append(' ').append(contentLength == null ? "0" : contentLength).append(" - ");
+                ServerTiming.appendMillis(sb, (System.nanoTime() - start) / 1000).append(" ms");
                 break;
         }
 
-        logMessage(status, message);
+        logMessage(status, sb.toString());
     }
 
     protected void logMessage(int status, String message)
     {
-        if (status >= 500) {
+        if (appender != null) {
+            appender.append(message);
+        } else if (status >= 500) {
             logger.fatal(message);
         } else if (status >= 400) {
             logger.error(message);
@@ -156,20 +217,21 @@ public class Logger extends Middleware {
     @Override
     public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
 
-        // common logging data
-        final long timestamp = System.currentTimeMillis();
+        // common logging data, the wall clock is only needed for the date
+        final long start = System.nanoTime();
+        final long timestamp = format == Format.DEFAULT ? System.currentTimeMillis() : 0;
         final String remoteClient = getClientAddress(request.remoteAddress());
         final HttpMethod method = request.method();
         final String uri = request.uri();
         final String version = getVersionString(request.version());
 
         if (immediate) {
-            log(request, timestamp, remoteClient, version, method.name(), uri);
+            log(request, timestamp, start, remoteClient, version, method.name(), uri);
         } else {
             request.response().endHandler(new Handler<Void>() {
                 @Override
                 public void handle(Void event) {
-                    log(request, timestamp, remoteClient, version, method.name(), uri);
+                    log(request, timestamp, start, remoteClient, version, method.name(), uri);
                 }
             });
         }
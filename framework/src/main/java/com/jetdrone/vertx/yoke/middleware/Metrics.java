@@ -0,0 +1,45 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * # Metrics
+ *
+ * Serves a JSON snapshot of the runtime numbers of the Yoke instance: requests, requests in flight, errors, responses by
+ * status class and latency percentiles (in microseconds) for the server, every mounted middleware and every route of
+ * the mounted routers. The same numbers are available as JMX attributes.
+ *
+ * <pre>
+ * yoke.use(new Metrics("/admin/metrics"));
+ * </pre>
+ *
+ * The endpoint is not protected, mount an authentication middleware before it if needed.
+ */
+public class Metrics extends Middleware {
+
+    private final String path;
+
+    public Metrics(@NotNull final String path) {
+        this.path = path;
+    }
+
+    public Metrics() {
+        this("/metrics");
+    }
+
+    @Override
+    public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+        if ((request.method() == HttpMethod.GET || request.method() == HttpMethod.HEAD) && path.equals(request.normalizedPath())) {
+            request.response().putHeader("cache-control", "no-cache");
+            request.response().end(yoke.metrics());
+        } else {
+            next.handle(null);
+        }
+    }
+}
@@ -4,7 +4,10 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.core.YokeException;
+import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.streams.Pump;
 import org.jetbrains.annotations.NotNull;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpClient;
@@ -13,70 +16,308 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+
 /** # RequestProxy
  *
  * RequestProxy provides web client a simple way to interact with other REST service
  * providers via Yoke, meanwhile Yoke could pre-handle authentication, logging and etc.
  *
+ * Requests are forwarded to one or more upstream servers using a pooled keep-alive HttpClient per upstream. Bodies are
+ * pumped in both directions so a slow peer pauses the other side instead of making the proxy buffer. When there is more
+ * than one upstream the one with the least pending requests is used (or round robin).
+ *
+ * <pre>
+ * new Yoke(...)
+ *   .use(new RequestProxy("/api")
+ *     .upstream("10.0.0.1", 8080, false)
+ *     .upstream("10.0.0.2", 8080, false)
+ *     .maxConnections(32)
+ *     .readTimeout(30000));
+ * </pre>
+ *
  * In order to handler the proxy request properly, Bodyparser should be disabled for the
  * path matched by RequestProxy.
  */
 public class RequestProxy extends Middleware {
 
+    /**
+     * How the upstream of each request is chosen
+     */
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_PENDING
+    }
+
+    // headers that only apply to a single connection, RFC 7230 section 6.1
+    private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer", "trailers",
+            "transfer-encoding", "upgrade"));
+
+    private static final class Upstream {
+        private final String host;
+        private final int port;
+        private final boolean secure;
+
+        private HttpClient client;
+        private int pending;
+
+        private Upstream(String host, int port, boolean secure) {
+            this.host = host;
+            this.port = port;
+            this.secure = secure;
+        }
+    }
+
     private final String prefix;
-    private final String host;
-    private final int port;
-    private final boolean secure;
+    private final List<Upstream> upstreams = new ArrayList<>();
 
-    public RequestProxy(@NotNull final String prefix, @NotNull final String host, final int port, final boolean secure) {
+    private Balancing balancing = Balancing.LEAST_PENDING;
+    private int maxConnections = HttpClientOptions.DEFAULT_MAX_POOL_SIZE;
+    private boolean keepAlive = true;
+    private int connectTimeout = HttpClientOptions.DEFAULT_CONNECT_TIMEOUT;
+    private long readTimeout = 0;
+
+    private int next;
+
+    /**
+     * Creates a proxy without upstreams, add them with upstream(host, port, secure).
+     *
+     * @param prefix the requests starting with this prefix are proxied (without it)
+     */
+    public RequestProxy(@NotNull final String prefix) {
         this.prefix = prefix;
-        this.host = host;
-        this.port = port;
-        this.secure = secure;
+    }
+
+    public RequestProxy(@NotNull final String prefix, @NotNull final String host, final int port, final boolean secure) {
+        this(prefix);
+        upstream(host, port, secure);
     }
 
     public RequestProxy(@NotNull final String prefix, final int port, final boolean secure) {
         this(prefix, "localhost", port, secure);
     }
 
+    /**
+     * Adds a server to forward requests to.
+     */
+    public RequestProxy upstream(@NotNull final String host, final int port, final boolean secure) {
+        upstreams.add(new Upstream(host, port, secure));
+        return this;
+    }
+
+    public RequestProxy balancing(@NotNull final Balancing balancing) {
+        this.balancing = balancing;
+        return this;
+    }
+
+    /**
+     * Maximum number of pooled connections per upstream (and event loop).
+     */
+    public RequestProxy maxConnections(final int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public RequestProxy keepAlive(final boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * @param connectTimeout milliseconds to establish a connection to an upstream
+     */
+    public RequestProxy connectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * @param readTimeout milliseconds without receiving data from the upstream before failing the request, 0 to wait
+     *                    forever
+     */
+    public RequestProxy readTimeout(final long readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    private Upstream select() {
+        final int size = upstreams.size();
+
+        if (balancing == Balancing.ROUND_ROBIN) {
+            next = (next + 1) % size;
+            return upstreams.get(next);
+        }
+
+        // least pending, start after the last choice so ties are spread
+        Upstream best = null;
+        for (int i = 1; i <= size; i++) {
+            final Upstream u = upstreams.get((next + i) % size);
+            if (best == null || u.pending < best.pending) {
+                best = u;
+            }
+        }
+        next = upstreams.indexOf(best);
+        return best;
+    }
+
+    private HttpClient client(final Upstream upstream) {
+        // created on first use so the client belongs to the context of the verticle handling the requests
+        if (upstream.client == null) {
+            upstream.client = vertx().createHttpClient(new HttpClientOptions()
+                    .setDefaultHost(upstream.host)
+                    .setDefaultPort(upstream.port)
+                    .setSsl(upstream.secure)
+                    .setKeepAlive(keepAlive)
+                    .setMaxPoolSize(maxConnections)
+                    .setConnectTimeout(connectTimeout));
+        }
+        return upstream.client;
+    }
+
+    private static void copyHeaders(final MultiMap from, final MultiMap to) {
+        for (Map.Entry<String, String> header : from) {
+            if (!HOP_BY_HOP.contains(header.getKey().toLowerCase())) {
+                to.add(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of an upstream response nobody is waiting for, the pooled connection is released once it ends
+     * (the client API has no way to abort a single connection).
+     */
+    private static void discard(final HttpClientResponse cRes) {
+        cRes.handler(new Handler<Buffer>() {
+            @Override
+            public void handle(Buffer chunk) {
+                // ignore
+            }
+        });
+        cRes.resume();
+    }
+
     @Override
     public void handle(@NotNull final YokeRequest req, @NotNull final Handler<Object> next) {
         if (!req.uri().startsWith(prefix)) {
           next.handle(null);
           return;
         }
-        final String newUri = req.uri().replaceFirst(prefix, "");
-        final HttpClient client = vertx().createHttpClient(new HttpClientOptions().setDefaultHost(host).setDefaultPort(port).setSsl(secure));
-
-        final HttpClientRequest cReq = client.request(req.method(), newUri, new Handler<HttpClientResponse>() {
-          public void handle(HttpClientResponse cRes) {
-            req.response().setStatusCode(cRes.statusCode());
-            req.response().headers().setAll(cRes.headers());
-            req.response().setChunked(true);
-            cRes.handler(new Handler<Buffer>() {
-              public void handle(Buffer data) {
-                req.response().write(data);
-              }
-            });
+
+        if (upstreams.isEmpty()) {
+            next.handle(new YokeException(502, "No upstream configured"));
+            return;
+        }
+
+        final String path = req.uri().substring(prefix.length());
+        final String newUri = path.length() == 0 ? "/" : path;
+        final Upstream upstream = select();
+        final YokeResponse res = req.response();
+
+        upstream.pending++;
+
+        final boolean[] done = new boolean[1];
+        final Handler<Void> complete = new VoidHandler() {
+            @Override
+            public void handle() {
+                if (!done[0]) {
+                    done[0] = true;
+                    upstream.pending--;
+                }
+            }
+        };
+
+        // the upstream response once received, and whether the client went away before it was complete
+        final HttpClientResponse[] upstreamRes = new HttpClientResponse[1];
+        final Pump[] pump = new Pump[1];
+        final boolean[] aborted = new boolean[1];
+
+        final HttpClientRequest cReq = client(upstream).request(req.method(), newUri, new Handler<HttpClientResponse>() {
+          public void handle(final HttpClientResponse cRes) {
+            if (aborted[0]) {
+              discard(cRes);
+              return;
+            }
+
+            res.setStatusCode(cRes.statusCode());
+            res.setStatusMessage(cRes.statusMessage());
+            copyHeaders(cRes.headers(), res.headers());
+            if (!cRes.headers().contains("content-length")) {
+              res.setChunked(true);
+            }
+
             cRes.endHandler(new VoidHandler() {
               public void handle() {
-                req.response().end();
+                complete.handle(null);
+                if (!aborted[0]) {
+                  res.end();
+                }
               }
             });
             cRes.exceptionHandler(new Handler<Throwable>() {
               public void handle(Throwable t) {
-                next.handle(t);
+                complete.handle(null);
+                // the status was already sent
+                res.close();
               }
             });
+
+            // pauses the upstream while the client is slower
+            pump[0] = Pump.pump(cRes, res).start();
+            upstreamRes[0] = cRes;
           }
         });
-        cReq.headers().setAll(req.headers());
-        cReq.setChunked(true);
-        req.handler(new Handler<Buffer>() {
-          public void handle(Buffer data) {
-            cReq.write(data);
+
+        // the client closed the connection, a paused pump would keep the upstream connection (and its pool slot) forever
+        res.closeHandler(new VoidHandler() {
+          public void handle() {
+            if (done[0]) {
+              return;
+            }
+            aborted[0] = true;
+            complete.handle(null);
+            if (upstreamRes[0] != null) {
+              pump[0].stop();
+              discard(upstreamRes[0]);
+            }
           }
         });
+
+        cReq.exceptionHandler(new Handler<Throwable>() {
+          public void handle(Throwable t) {
+            if (done[0]) {
+              return;
+            }
+            complete.handle(null);
+            if (res.headWritten()) {
+              res.close();
+            } else {
+              next.handle(new YokeException(t instanceof TimeoutException ? 504 : 502, t));
+            }
+          }
+        });
+
+        if (readTimeout > 0) {
+          cReq.setTimeout(readTimeout);
+        }
+
+        copyHeaders(req.headers(), cReq.headers());
+        if (!req.headers().contains("content-length")) {
+          final String te = req.getHeader("transfer-encoding");
+          if (te != null && te.toLowerCase().contains("chunked")) {
+            cReq.setChunked(true);
+          }
+        }
+
+        if (req.isEnded()) {
+          // the body (if any) was already consumed by another middleware
+          cReq.end();
+          return;
+        }
+
+        // pauses the client while the upstream is slower
+        Pump.pump(req, cReq).start();
         req.endHandler(new VoidHandler() {
           public void handle() {
             cReq.end();
@@ -4,25 +4,60 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.core.ServerTiming;
 import org.jetbrains.annotations.NotNull;
 import io.vertx.core.Handler;
 
 /** # ResponseTime
  *
- * Adds the ```x-response-time``` header displaying the response duration in milliseconds.
+ * Adds the ```x-response-time``` header displaying the response duration in milliseconds with microsecond resolution
+ * (e.g.: ```1.250ms```).
+ *
+ * When enabled with ```new ResponseTime(true)``` it also adds a standard ```server-timing``` header with the time spent
+ * in every middleware called after this one, mount it first to get the complete breakdown:
+ *
+ * <pre>
+ * server-timing: ResponseTime;dur=0.004, BodyParser;dur=0.051, Router;dur=1.180, total;dur=1.250
+ * </pre>
  */
 public class ResponseTime extends Middleware {
+
+    private final boolean serverTiming;
+
+    public ResponseTime() {
+        this(false);
+    }
+
+    /**
+     * @param serverTiming add the server-timing header
+     */
+    public ResponseTime(final boolean serverTiming) {
+        this.serverTiming = serverTiming;
+    }
+
     @Override
     public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
 
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
         final YokeResponse response = request.response();
+        final ServerTiming timing;
+
+        if (serverTiming) {
+            timing = new ServerTiming(8);
+            timing.start(this);
+            request.setTiming(timing);
+        } else {
+            timing = null;
+        }
 
         response.headersHandler(new Handler<Void>() {
             @Override
             public void handle(Void event) {
-                long duration = System.currentTimeMillis() - start;
-                response.putHeader("x-response-time", duration + "ms");
+                final long micros = (System.nanoTime() - start) / 1000;
+                response.putHeader("x-response-time", ServerTiming.appendMillis(new StringBuilder(16), micros).append("ms").toString());
+                if (timing != null) {
+                    response.putHeader("server-timing", timing.header());
+                }
             }
         });
 
@@ -7,13 +7,14 @@ import com.jetdrone.vertx.yoke.IMiddleware;
 import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.Yoke;
 import com.jetdrone.vertx.yoke.annotations.*;
+import com.jetdrone.vertx.yoke.core.impl.RequestMetrics;
+import com.jetdrone.vertx.yoke.core.impl.RouteMatcher;
 import com.jetdrone.vertx.yoke.jmx.RouteMBean;
-import com.jetdrone.vertx.yoke.util.AsyncIterator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import io.vertx.core.Handler;
-import io.vertx.core.MultiMap;
-import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
 import javax.management.*;
 import java.lang.management.ManagementFactory;
@@ -38,18 +39,23 @@ import java.util.regex.Pattern;
  */
 public class Router extends Middleware {
 
-    private final List<PatternBinding> getBindings = new ArrayList<>();
-    private final List<PatternBinding> putBindings = new ArrayList<>();
-    private final List<PatternBinding> postBindings = new ArrayList<>();
-    private final List<PatternBinding> deleteBindings = new ArrayList<>();
-    private final List<PatternBinding> optionsBindings = new ArrayList<>();
-    private final List<PatternBinding> headBindings = new ArrayList<>();
-    private final List<PatternBinding> traceBindings = new ArrayList<>();
-    private final List<PatternBinding> connectBindings = new ArrayList<>();
-    private final List<PatternBinding> patchBindings = new ArrayList<>();
+    private final RouteMatcher<PatternBinding> getBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> putBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> postBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> deleteBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> optionsBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> headBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> traceBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> connectBindings = new RouteMatcher<>();
+    private final RouteMatcher<PatternBinding> patchBindings = new RouteMatcher<>();
 
     private final Map<String, Middleware> paramProcessors = new HashMap<>();
 
+    /**
+     * Number of middleware that can be called synchronously in a row before yielding to the event loop.
+     */
+    private int maxSyncDepth = 0;
+
     /**
      * Create a new Router Middleware.
      *
@@ -66,7 +72,7 @@ public class Router extends Middleware {
     public Router() {
     }
 
-    private void init(Yoke yoke, String mount, List<PatternBinding> bindings) {
+    private void init(Yoke yoke, String mount, Iterable<PatternBinding> bindings) {
         for (PatternBinding binding : bindings) {
             for (IMiddleware m : binding.middleware) {
                 if (m instanceof Middleware) {
@@ -641,6 +647,28 @@ public class Router extends Middleware {
         return this;
     }
 
+    /**
+     * By default every param processor and middleware of a route is scheduled on the event loop with runOnContext.
+     * This enables the synchronous dispatch mode, where the next middleware is called directly as soon as the previous
+     * one calls next. The chain is trampolined so synchronous middleware do not grow the stack and after maxDepth
+     * consecutive synchronous calls the chain falls back to runOnContext so other requests are not starved.
+     *
+     * <pre>
+     * new Router()
+     *   .syncDispatch(32)
+     *   .get("/hello", ...);
+     * </pre>
+     *
+     * @param maxDepth the number of middleware calls on the same stack, 0 restores the default behaviour
+     */
+    public Router syncDispatch(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must be >= 0");
+        }
+        this.maxSyncDepth = maxDepth;
+        return this;
+    }
+
     public Router param(@NotNull final String paramName, @NotNull final Middleware handler) {
         // also pass the vertx object to the routes
         if (!handler.isInitialized() && isInitialized()) {
@@ -665,7 +693,7 @@ public class Router extends Middleware {
         });
     }
 
-    private void addPattern(String verb, String input, IMiddleware[] handler, List<PatternBinding> bindings) {
+    private void addPattern(String verb, String input, IMiddleware[] handler, RouteMatcher<PatternBinding> bindings) {
         // We need to search for any :<token name> tokens in the String and replace them with named capture groups
         Matcher m =  Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)").matcher(input);
         StringBuffer sb = new StringBuffer();
@@ -697,7 +725,7 @@ public class Router extends Middleware {
 
         if (!exists) {
             PatternBinding binding = new PatternBinding(hashCode(), verb, input, regex, groups, handler);
-            bindings.add(binding);
+            bindings.add(input, regex, binding);
         }
 
         // also pass the vertx object to the routes
@@ -711,7 +739,7 @@ public class Router extends Middleware {
         }
     }
 
-    private void addRegEx(String verb, Pattern regex, IMiddleware handler[], List<PatternBinding> bindings) {
+    private void addRegEx(String verb, Pattern regex, IMiddleware handler[], RouteMatcher<PatternBinding> bindings) {
         boolean exists = false;
         // verify if the binding already exists, if yes add to it
         for (PatternBinding pb : bindings) {
@@ -724,7 +752,7 @@ public class Router extends Middleware {
 
         if (!exists) {
             PatternBinding binding = new PatternBinding(hashCode(), verb, null, regex, null, handler);
-            bindings.add(binding);
+            bindings.add(null, regex, binding);
         }
 
         // also pass the vertx object to the routes
@@ -738,133 +766,206 @@ public class Router extends Middleware {
         }
     }
 
-    private void route(final YokeRequest request, final Handler<Object> next, final List<PatternBinding> bindings) {
-
-        new AsyncIterator<PatternBinding>(bindings) {
-            @Override
-            public void handle(final PatternBinding binding) {
-                if (hasNext()) {
-                    route(request, binding, new Handler<Object>() {
-                        @Override
-                        public void handle(Object err) {
-                            if (err == null) {
-                                next();
-                            } else {
-                                next.handle(err);
-                            }
-                        }
-                    });
-                } else {
-                    // continue with yoke
-                    next.handle(null);
-                }
-            }
-        };
+    private void route(final YokeRequest request, final Handler<Object> next, final RouteMatcher<PatternBinding> bindings) {
+        // only the bindings matching the request path are iterated, in registration order
+        new RouteChain(request, next, bindings.match(request.path())).handle(null);
     }
 
-    private void route(final YokeRequest request, final PatternBinding binding, final Handler<Object> next) {
-        final Matcher m = binding.pattern.matcher(request.path());
-        final Vertx vertx = vertx();
-        
-        if (m.matches()) {
-            final MultiMap params = request.params();
+    /**
+     * Per request dispatch state. The same instance is handed to every param processor and middleware as their next
+     * handler so walking a route does not allocate per hop.
+     *
+     * When a middleware calls next synchronously the call only flags the chain as pending and returns, the loop in
+     * run then invokes the following middleware, so the stack does not grow with the length of the chain. After
+     * maxSyncDepth consecutive synchronous hops the next middleware is scheduled with runOnContext to give other
+     * requests on the event loop a chance to run.
+     */
+    private final class RouteChain implements Handler<Object> {
+
+        private final YokeRequest request;
+        private final Handler<Object> next;
+        private final Iterator<RouteMatcher.Match<PatternBinding>> matches;
+
+        private RouteMatcher.Match<PatternBinding> match;
+        private Iterator<String> params;
+        private int index;
+
+        private boolean running;
+        private boolean pending;
+
+        // metrics, the route handling the request and since when
+        private PatternBinding active;
+        private long activeStart;
+        private boolean done;
+        private Handler<Void> finished;
+
+        private RouteChain(YokeRequest request, Handler<Object> next, Iterator<RouteMatcher.Match<PatternBinding>> matches) {
+            this.request = request;
+            this.next = next;
+            this.matches = matches;
+        }
+
+        private void enter(PatternBinding binding) {
+            if (done) {
+                return;
+            }
 
-            if (binding.paramNames != null) {
-                // Named params
-                new AsyncIterator<String>(binding.paramNames) {
+            if (finished == null) {
+                // only requests that match a route pay for the handlers
+                finished = new Handler<Void>() {
                     @Override
-                    public void handle(String param) {
-                        if (hasNext()) {
-                            params.set(param, m.group(param));
-                            final Middleware paramMiddleware = paramProcessors.get(param);
-                            if (paramMiddleware != null) {
-                                // do not block main loop
-                                vertx.runOnContext(new Handler<Void>() {
-                                    @Override
-                                    public void handle(Void event) {
-                                        paramMiddleware.handle(request, new Handler<Object>() {
-                                            @Override
-                                            public void handle(Object err) {
-                                                if (err == null) {
-                                                    next();
-                                                } else {
-                                                    next.handle(err);
-                                                }
-                                            }
-                                        });
-                                    }
-                                });
-                            } else {
-                                next();
+                    public void handle(Void event) {
+                        if (!done) {
+                            done = true;
+                            if (active != null) {
+                                active.metrics.end(activeStart, request.response().getStatusCode());
+                                active = null;
                             }
-                        } else {
-                            // middlewares
-                            new AsyncIterator<IMiddleware>(binding.middleware) {
-                                @Override
-                                public void handle(final IMiddleware middleware) {
-                                    if (hasNext()) {
-                                        // do not block main loop
-                                        vertx.runOnContext(new Handler<Void>() {
-                                            @Override
-                                            public void handle(Void event) {
-                                                middleware.handle(request, new Handler<Object>() {
-                                                    @Override
-                                                    public void handle(Object err) {
-                                                        if (err == null) {
-                                                            next();
-                                                        } else {
-                                                            next.handle(err);
-                                                        }
-                                                    }
-                                                });
-                                            }
-                                        });
-                                    } else {
-                                        next.handle(null);
-                                    }
-                                }
-                            };
                         }
                     }
                 };
+                request.response().endHandler(finished);
+                request.response().closeHandler(new Handler<Void>() {
+                    @Override
+                    public void handle(Void event) {
+                        if (!done) {
+                            done = true;
+                            leave(true);
+                        }
+                    }
+                });
+            }
+
+            active = binding;
+            activeStart = binding.metrics.enter();
+        }
+
+        private void leave(boolean error) {
+            if (active != null) {
+                active.metrics.leave(activeStart, error);
+                active = null;
+            }
+        }
+
+        @Override
+        public void handle(Object err) {
+            if (err != null) {
+                leave(true);
+                next.handle(err);
+                return;
+            }
+
+            if (running) {
+                // completed synchronously, let the loop in run continue
+                pending = true;
             } else {
-                // Un-named params
-                for (int i = 0; i < m.groupCount(); i++) {
-                    params.set("param" + i, m.group(i + 1));
+                run();
+            }
+        }
+
+        private void run() {
+            int hops = 0;
+            running = true;
+            try {
+                IMiddleware middleware;
+                while ((middleware = advance()) != null) {
+                    if (hops++ >= maxSyncDepth) {
+                        defer(middleware);
+                        return;
+                    }
+
+                    pending = false;
+                    middleware.handle(request, this);
+
+                    if (!pending) {
+                        // the middleware will resume the chain asynchronously (or never)
+                        return;
+                    }
                 }
+            } finally {
+                running = false;
+            }
+        }
 
-                // middlewares
-                new AsyncIterator<IMiddleware>(binding.middleware) {
-                    @Override
-                    public void handle(final IMiddleware middleware) {
-                        if (hasNext()) {
-                            // do not block main loop
-                            vertx.runOnContext(new Handler<Void>() {
-                                @Override
-                                public void handle(Void event) {
-                                    middleware.handle(request, new Handler<Object>() {
-                                        @Override
-                                        public void handle(Object err) {
-                                            if (err == null) {
-                                                next();
-                                            } else {
-                                                next.handle(err);
-                                            }
-                                        }
-                                    });
-                                }
-                            });
-                        } else {
-                            next.handle(null);
+        private void defer(final IMiddleware middleware) {
+            // do not block main loop
+            vertx().runOnContext(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    middleware.handle(request, RouteChain.this);
+                }
+            });
+        }
+
+        /**
+         * Moves to the next param processor or middleware to call, when there is nothing else the control is returned
+         * to yoke and null is returned.
+         */
+        private IMiddleware advance() {
+            for (;;) {
+                if (match == null) {
+                    if (!matches.hasNext()) {
+                        // continue with yoke
+                        next.handle(null);
+                        return null;
+                    }
+
+                    match = matches.next();
+                    index = 0;
+                    enter(match.value);
+
+                    if (match.value.paramNames != null) {
+                        // Named params
+                        params = match.value.paramNames.iterator();
+                    } else {
+                        // Un-named params
+                        params = null;
+                        for (int i = 0; i < match.groupCount(); i++) {
+                            request.params().set("param" + i, match.group(i + 1));
                         }
                     }
-                };
+                }
+
+                if (params != null) {
+                    if (params.hasNext()) {
+                        final String param = params.next();
+                        request.params().set(param, match.group(param));
+                        final Middleware paramMiddleware = paramProcessors.get(param);
+                        if (paramMiddleware != null) {
+                            return paramMiddleware;
+                        }
+                        continue;
+                    }
+                    params = null;
+                }
+
+                final List<IMiddleware> middleware = match.value.middleware;
+
+                if (index < middleware.size()) {
+                    return middleware.get(index++);
+                }
+
+                // all middleware for this binding called next, try the next matching binding
+                leave(false);
+                match = null;
             }
-        } else {
-            next.handle(null);
         }
     }
 
+    /**
+     * Snapshot of the runtime numbers of every route.
+     */
+    public JsonArray metrics() {
+        final JsonArray routes = new JsonArray();
+        for (RouteMatcher<PatternBinding> bindings : Arrays.asList(getBindings, putBindings, postBindings, deleteBindings,
+                optionsBindings, headBindings, traceBindings, connectBindings, patchBindings)) {
+            for (PatternBinding binding : bindings) {
+                routes.add(binding.toJson());
+            }
+        }
+        return routes;
+    }
+
     private static class PatternBinding {
 
         //Get the MBean server
@@ -872,6 +973,10 @@ public class Router extends Middleware {
 
         private final Pattern pattern;
         private final String route;
+        private final String verb;
+
+        // runtime numbers of the requests matching this route
+        private final RequestMetrics metrics = new RequestMetrics();
 
         private final List<IMiddleware> middleware = new ArrayList<>();
         private final Set<String> paramNames;
@@ -880,6 +985,7 @@ public class Router extends Middleware {
 
         private PatternBinding(int hasCode, @NotNull String verb, @Nullable String route, @NotNull Pattern pattern, @Nullable Set<String> paramNames, @NotNull IMiddleware[] middleware) {
             this.route = route;
+            this.verb = verb;
             this.pattern = pattern;
             this.paramNames = paramNames;
             Collections.addAll(this.middleware, middleware);
@@ -898,7 +1004,7 @@ public class Router extends Middleware {
             }
 
             try {
-                mbs.registerMBean(new RouteMBean(this.middleware), objectName);
+                mbs.registerMBean(new RouteMBean(this.middleware, metrics), objectName);
             } catch (InstanceAlreadyExistsException e) {
                 // ignore
             } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
@@ -920,7 +1026,7 @@ public class Router extends Middleware {
 
             // re register if present
             try {
-                mbs.registerMBean(new RouteMBean(this.middleware), objectName);
+                mbs.registerMBean(new RouteMBean(this.middleware, metrics), objectName);
             } catch (InstanceAlreadyExistsException e) {
                 // ignore
             } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
@@ -928,6 +1034,12 @@ public class Router extends Middleware {
             }
         }
 
+        private JsonObject toJson() {
+            return metrics.toJson()
+                    .put("method", verb)
+                    .put("path", route != null ? route : pattern.pattern());
+        }
+
         private boolean isFor(@NotNull String route) {
             return this.route != null && this.route.equals(route);
         }
@@ -5,6 +5,8 @@ package com.jetdrone.vertx.yoke.middleware;
 
 import javax.crypto.Mac;
 
+import java.util.concurrent.TimeUnit;
+
 import io.vertx.core.json.JsonObject;
 import org.jetbrains.annotations.NotNull;
 import io.vertx.core.Handler;
@@ -14,6 +16,9 @@ import com.jetdrone.vertx.yoke.core.YokeCookie;
 
 /**
  * # Session
+ *
+ * The *maxAge* of the constructors is the max age of the session cookie, in seconds. The session store keeps the
+ * session for the same time.
  */
 public class Session extends Middleware {
 
@@ -62,6 +67,10 @@ public class Session extends Middleware {
             return;
         }
 
+        // the store keeps the session as long as the cookie, the cookie max age is in seconds and the store expects
+        // milliseconds (0 for its default when the cookie has no max age)
+        request.setSessionMaxAge(maxAge > 0 ? TimeUnit.SECONDS.toMillis(maxAge) : 0);
+
         // find the session cookie
         final YokeCookie sessionCookie = request.getCookie(name);
         final YokeResponse response = request.response();
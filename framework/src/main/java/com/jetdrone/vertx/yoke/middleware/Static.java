@@ -5,27 +5,85 @@ package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.MimeType;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.core.impl.FileCache;
 import com.jetdrone.vertx.yoke.util.Utils;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import org.jetbrains.annotations.NotNull;
 import io.vertx.core.*;
+import io.vertx.core.file.AsyncFile;
 import io.vertx.core.file.FileProps;
 import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.FileSystemException;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.impl.ContextImpl;
 import io.vertx.core.json.JsonArray;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.TimeZone;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * # Static
  *
- * Static file server with the given ```root``` path. Optionaly will also generate index pages for directory listings.
+ * Static file server with the given ```root``` path. Optionaly will also generate index pages for directory listings,
+ * serve precompressed (.br, .gz) versions of the files and keep file metadata and small files in memory.
+ *
+ * Range requests (including If-Range) are supported for GET, a single range is sent with a zero copy sendFile and
+ * multiple ranges as a multipart/byteranges body.
  */
 public class Static extends Middleware {
 
+    /**
+     * Result of looking up a file, the properties and the headers derived from them are computed once per cached entry.
+     */
+    private static final class FileEntry {
+        // null when the file does not exist
+        final FileProps props;
+        final String etag;
+        final String lastModified;
+
+        // contents of small files, loaded in the background after the first request
+        volatile Buffer content;
+        volatile boolean loading;
+
+        FileEntry(FileProps props, String etag, String lastModified) {
+            this.props = props;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final FileEntry NOT_FOUND = new FileEntry(null, null, null);
+
+    /**
+     * The formatted date header of a given second
+     */
+    private static final class DateHeader {
+        final long second;
+        final String value;
+
+        DateHeader(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+
     /**
      * SimpleDateFormat to format date objects into ISO format.
      */
@@ -56,6 +114,67 @@ public class Static extends Middleware {
      */
     private final boolean includeHidden;
 
+    /**
+     * Serve precompressed siblings (file.br, file.gz) when the client accepts them
+     */
+    private boolean precompressed;
+
+    /**
+     * Generate missing file.gz siblings in the background
+     */
+    private boolean generatePrecompressed;
+
+    /**
+     * Regular expression to identify the mime types worth compressing
+     */
+    private Pattern compressible = Pattern.compile("json|text|javascript|xml|svg");
+
+    /**
+     * Files currently being compressed in the background
+     */
+    private final Set<String> compressing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Files that could not be compressed and the modification time they had then, they are only tried again once
+     * they change
+     */
+    private final ConcurrentHashMap<String, Long> compressFailed = new ConcurrentHashMap<>();
+
+    /**
+     * Smallest file that gets a generated .gz sibling
+     */
+    private static final long MIN_COMPRESS_SIZE = 1024;
+
+    /**
+     * Requests with more ranges than this get the full file, guards against many tiny or overlapping ranges
+     */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * Size of the reads used to write multipart/byteranges bodies
+     */
+    private static final int RANGE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Cache of file lookups, null when caching is disabled
+     */
+    private FileCache<FileEntry> cache;
+
+    /**
+     * Largest file whose contents are kept in memory
+     */
+    private long maxCachedFileSize;
+
+    /**
+     * Precomputed cache-control header
+     */
+    private final String cacheControl;
+
+    /**
+     * Date header of the last second a response was sent
+     */
+    private volatile DateHeader dateHeader;
+
     /**
      * Create a new Static File Server Middleware
      *
@@ -81,6 +200,7 @@ public class Static extends Middleware {
         this.includeHidden = includeHidden;
         this.directoryListing = directoryListing;
         this.directoryTemplate = Utils.readResourceToBuffer(getClass(), "directory.html").toString();
+        this.cacheControl = "public, max-age=" + maxAge / 1000;
 
         ISODATE = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
         ISODATE.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -116,31 +236,239 @@ public class Static extends Middleware {
         this(root, 86400000, false, false);
     }
 
+    /**
+     * Enables serving of precompressed files. When a request accepts br or gzip and a sibling file with the extension
+     * .br or .gz exists (and is not older than the original) it is sent instead using the same zero copy sendFile and
+     * the Content-Encoding header is set accordingly.
+     *
+     * <pre>
+     * new Yoke(...)
+     *   .use(new Static("webroot").precompressed(true));
+     * </pre>
+     *
+     * @param generate when true, missing .gz siblings of compressible files are created in the background on first
+     *                 access so the next requests can use them (br cannot be generated by the JDK).
+     * @return self
+     */
+    public Static precompressed(boolean generate) {
+        this.precompressed = true;
+        this.generatePrecompressed = generate;
+        return this;
+    }
+
+    /**
+     * Enables serving of precompressed files, see precompressed(boolean).
+     *
+     * @param generate   create missing .gz siblings in the background
+     * @param compressible regular expression of the mime types that get .gz siblings generated
+     * @return self
+     */
+    public Static precompressed(boolean generate, @NotNull Pattern compressible) {
+        this.compressible = compressible;
+        return precompressed(generate);
+    }
+
+    /**
+     * Keeps the properties of looked up files (including missing ones) and the contents of small files in memory. Entries
+     * are invalidated by a file watcher as soon as the files or their directories change.
+     *
+     * <pre>
+     * new Yoke(...)
+     *   .use(new Static("webroot").cache(1024, 64 * 1024));
+     * </pre>
+     *
+     * @param maxEntries  maximum number of files to cache
+     * @param maxFileSize files up to this size (in bytes) are served from memory, 0 to only cache metadata
+     * @return self
+     */
+    public Static cache(int maxEntries, long maxFileSize) {
+        return cache(maxEntries, maxFileSize, 0);
+    }
+
+    /**
+     * Keeps the properties of looked up files (including missing ones) and the contents of small files in memory, see
+     * cache(int, long).
+     *
+     * @param maxEntries  maximum number of files to cache
+     * @param maxFileSize files up to this size (in bytes) are served from memory, 0 to only cache metadata
+     * @param ttl         time in milliseconds an entry is valid, when 0 a file watcher invalidates the entries instead
+     *                    (a ttl is useful on file systems that do not report changes, e.g.: network mounts)
+     * @return self
+     */
+    public Static cache(int maxEntries, long maxFileSize, long ttl) {
+        if (cache != null) {
+            cache.close();
+        }
+        this.cache = new FileCache<>(maxEntries, ttl);
+        this.maxCachedFileSize = maxFileSize;
+        return this;
+    }
+
+    @Override
+    public Middleware init(@NotNull final Yoke yoke, @NotNull final String mount) {
+        super.init(yoke, mount);
+        // stop the file watcher when the verticle that created the middleware is undeployed
+        final Context context = vertx().getOrCreateContext();
+        if (context instanceof ContextImpl) {
+            ((ContextImpl) context).addCloseHook(new Closeable() {
+                @Override
+                public void close(Handler<AsyncResult<Void>> completionHandler) {
+                    Static.this.close();
+                    completionHandler.handle(Future.<Void>succeededFuture());
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * Releases the cache and its file watcher. Called when the verticle is undeployed, call it when the middleware is
+     * discarded otherwise.
+     */
+    public void close() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
     /**
      * Create all required header so content can be cache by Caching servers or Browsers
      *
      * @param request
-     * @param props
+     * @param entry
+     */
+    private void writeHeaders(final YokeRequest request, final FileEntry entry) {
+        writeHeaders(request, entry, entry.etag);
+    }
+
+    /**
+     * Create all required header so content can be cache by Caching servers or Browsers
+     *
+     * @param request
+     * @param entry
+     * @param etag the etag of the selected representation
      */
-    private void writeHeaders(final YokeRequest request, final FileProps props) {
+    private void writeHeaders(final YokeRequest request, final FileEntry entry, final String etag) {
 
         MultiMap headers = request.response().headers();
 
         if (!headers.contains("etag")) {
-            headers.set("etag", "\"" + props.size() + "-" + props.lastModifiedTime() + "\"");
+            headers.set("etag", etag);
         }
 
         if (!headers.contains("date")) {
-            headers.set("date", format(new Date()));
+            headers.set("date", now());
         }
 
         if (!headers.contains("cache-control")) {
-            headers.set("cache-control", "public, max-age=" + maxAge / 1000);
+            headers.set("cache-control", cacheControl);
         }
 
         if (!headers.contains("last-modified")) {
-            headers.set("last-modified", format(new Date(props.lastModifiedTime())));
+            headers.set("last-modified", entry.lastModified);
+        }
+    }
+
+    /**
+     * Returns the current date formatted for the date header, it is only formatted once per second.
+     */
+    private String now() {
+        final long second = System.currentTimeMillis() / 1000;
+        DateHeader date = dateHeader;
+
+        if (date == null || date.second != second) {
+            date = new DateHeader(second, format(new Date(second * 1000)));
+            dateHeader = date;
+        }
+
+        return date.value;
+    }
+
+    /**
+     * Looks up a file, from the cache when enabled. Missing files result in a entry without properties.
+     *
+     * @param file
+     * @param handler
+     */
+    private void stat(final String file, final Handler<AsyncResult<FileEntry>> handler) {
+        final FileCache<FileEntry> cache = this.cache;
+
+        if (cache != null) {
+            final FileEntry entry = cache.get(file);
+            if (entry != null) {
+                handler.handle(Future.succeededFuture(entry));
+                return;
+            }
+        }
+
+        final long version = cache != null ? cache.version() : 0;
+
+        // watching the directory blocks too, both run in the same worker round trip
+        vertx().executeBlocking(new Handler<Future<FileEntry>>() {
+            @Override
+            public void handle(Future<FileEntry> future) {
+                // before the stat, so a change in between is seen as a new version
+                final boolean cacheable = cache != null && cache.watch(file);
+                FileEntry entry;
+
+                try {
+                    final FileProps props = vertx().fileSystem().propsBlocking(file);
+                    entry = new FileEntry(
+                            props,
+                            "\"" + props.size() + "-" + props.lastModifiedTime() + "\"",
+                            format(new Date(props.lastModifiedTime())));
+                } catch (FileSystemException e) {
+                    if (!isNotFound(e)) {
+                        future.fail(e);
+                        return;
+                    }
+                    entry = NOT_FOUND;
+                }
+
+                if (cacheable) {
+                    cache.put(file, entry, version);
+                }
+
+                future.complete(entry);
+            }
+        }, false, handler);
+    }
+
+    private static boolean isNotFound(Throwable t) {
+        while (t != null) {
+            if (t instanceof NoSuchFileException || t instanceof NotDirectoryException) {
+                return true;
+            }
+            t = t.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Reads a small file into its cache entry so the next requests are served from memory.
+     *
+     * @param file
+     * @param entry
+     */
+    private void load(final String file, final FileEntry entry) {
+        if (entry.loading) {
+            return;
         }
+        entry.loading = true;
+
+        vertx().fileSystem().readFile(file, new AsyncResultHandler<Buffer>() {
+            @Override
+            public void handle(AsyncResult<Buffer> asyncResult) {
+                // if the file changed in between the entry is invalidated anyway, never serve a mismatching length
+                if (asyncResult.succeeded() && asyncResult.result().length() == entry.props.size()) {
+                    // the buffer is written to many responses, it must not be released by any of them
+                    entry.content = Buffer.buffer(Unpooled.unreleasableBuffer(asyncResult.result().getByteBuf()));
+                } else {
+                    // try again on a later request
+                    entry.loading = false;
+                }
+            }
+        });
     }
 
     /**
@@ -165,26 +493,543 @@ public class Static extends Middleware {
         }
     }
 
+    /**
+     * Validate and write the selected representation of a file, either the file itself or a precompressed sibling
+     *
+     * @param request
+     * @param file the requested file
+     * @param entry the requested file properties
+     * @param body the file to send (the requested one or a precompressed sibling)
+     * @param bodyEntry the file to send properties
+     * @param encoding the content encoding of the body file or null
+     * @param next
+     */
+    private void send(final YokeRequest request, final String file, final FileEntry entry, final String body, final FileEntry bodyEntry, final String encoding, final Handler<Object> next) {
+        // each representation has its own strong etag, the sibling etag is derived from its own properties
+        final String etag = encoding == null ? entry.etag : bodyEntry.etag.substring(0, bodyEntry.etag.length() - 1) + "-" + encoding + "\"";
+
+        // write cache control headers
+        writeHeaders(request, entry, etag);
+        // verify if we are still fresh
+        if (isFresh(request)) {
+            request.response().setStatusCode(304);
+            request.response().end();
+            return;
+        }
+
+        final String range = request.getHeader("range");
+
+        // the last modified date is shared by all representations so only the etag can validate an encoded one
+        if (range != null && HttpMethod.GET.equals(request.method()) && ifRange(request.getHeader("if-range"), etag, encoding == null ? entry.lastModified : null)) {
+            final long[] ranges = parseRanges(range, bodyEntry.props.size());
+            if (ranges != null) {
+                sendRanges(request, file, body, bodyEntry, encoding, ranges, next);
+                return;
+            }
+        }
+
+        sendFile(request, file, body, bodyEntry, encoding);
+    }
+
     /**
      * Write a file into the response body
      *
      * @param request
-     * @param file
-     * @param props
+     * @param file the requested file, used to find the content type
+     * @param body the file to send (the requested one or a precompressed sibling)
+     * @param bodyEntry the file to send properties
+     * @param encoding the content encoding of the body file or null
      */
-    private void sendFile(final YokeRequest request, final String file, final FileProps props) {
+    private void sendFile(final YokeRequest request, final String file, final String body, final FileEntry bodyEntry, final String encoding) {
         // write content type
         String contentType = MimeType.getMime(file);
         String charset = MimeType.getCharset(contentType);
         request.response().setContentType(contentType, charset);
-        request.response().putHeader("Content-Length", Long.toString(props.size()));
+        request.response().putHeader("Content-Length", Long.toString(bodyEntry.props.size()));
+        request.response().putHeader("Accept-Ranges", "bytes");
+
+        if (encoding != null) {
+            request.response().putHeader("Content-Encoding", encoding);
+        }
+
+        // the body is sent as is (like sendFile does), cached or not, and must not be compressed again
+        request.response().setFilter(null);
 
         // head support
         if (HttpMethod.HEAD.equals(request.method())) {
             request.response().end();
         } else {
-            request.response().sendFile(file);
+            final Buffer content = bodyEntry.content;
+
+            if (content != null) {
+                request.response().end(content);
+            } else {
+                if (cache != null && bodyEntry.props.size() <= maxCachedFileSize && bodyEntry.props.isRegularFile()) {
+                    load(body, bodyEntry);
+                }
+                request.response().sendFile(body);
+            }
+        }
+    }
+
+    /**
+     * Write a file into the response body preferring a precompressed sibling if the client accepts it
+     *
+     * @param request
+     * @param file
+     * @param entry
+     * @param next
+     */
+    private void sendPrecompressed(final YokeRequest request, final String file, final FileEntry entry, final Handler<Object> next) {
+        final String accept = request.getHeader("accept-encoding");
+        final List<String> encodings = new ArrayList<>(2);
+
+        if (accept != null) {
+            final float br = quality(accept, "br");
+            final float gzip = quality(accept, "gzip");
+
+            if (br > 0 && br >= gzip) {
+                encodings.add("br");
+            }
+            if (gzip > 0) {
+                encodings.add("gzip");
+            }
+            if (br > 0 && br < gzip) {
+                encodings.add("br");
+            }
+        }
+
+        sendPrecompressed(request, file, entry, encodings, 0, next);
+    }
+
+    private void sendPrecompressed(final YokeRequest request, final String file, final FileEntry entry, final List<String> encodings, final int index, final Handler<Object> next) {
+        if (index == encodings.size()) {
+            if (generatePrecompressed && encodings.contains("gzip")) {
+                compress(file, entry.props);
+            }
+            send(request, file, entry, file, entry, null, next);
+            return;
+        }
+
+        final String encoding = encodings.get(index);
+        final String sibling = file + ("br".equals(encoding) ? ".br" : ".gz");
+
+        stat(sibling, new Handler<AsyncResult<FileEntry>>() {
+            @Override
+            public void handle(AsyncResult<FileEntry> asyncResult) {
+                final FileProps siblingProps = asyncResult.succeeded() ? asyncResult.result().props : null;
+
+                if (siblingProps != null && siblingProps.isRegularFile() && siblingProps.lastModifiedTime() >= entry.props.lastModifiedTime()) {
+                    send(request, file, entry, sibling, asyncResult.result(), encoding, next);
+                } else {
+                    // missing or stale, try the next acceptable encoding
+                    sendPrecompressed(request, file, entry, encodings, index + 1, next);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates (or replaces a stale) file.gz sibling in a worker thread, the current request is served uncompressed.
+     *
+     * @param file
+     * @param props
+     */
+    private void compress(final String file, final FileProps props) {
+        if (props.size() < MIN_COMPRESS_SIZE || !compressible.matcher(MimeType.getMime(file)).find()) {
+            return;
+        }
+
+        final Long failed = compressFailed.get(file);
+        if (failed != null && failed == props.lastModifiedTime()) {
+            return;
+        }
+
+        // only one background job per file
+        if (!compressing.add(file)) {
+            return;
         }
+
+        vertx().executeBlocking(new Handler<Future<Void>>() {
+            @Override
+            public void handle(Future<Void> future) {
+                final Path source = Paths.get(file);
+                final Path target = Paths.get(file + ".gz");
+
+                try {
+                    // write to a temp file first so requests never see a partial sibling
+                    final Path tmp = Files.createTempFile(source.toAbsolutePath().getParent(), ".yoke", ".gz");
+                    try {
+                        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                            Files.copy(source, out);
+                        }
+                        // temp files are only readable by the owner, others (e.g.: a front proxy) may serve the sibling
+                        if (Files.getFileStore(tmp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                            Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(source));
+                        }
+                        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        Files.deleteIfExists(tmp);
+                    }
+                    future.complete();
+                } catch (IOException | RuntimeException e) {
+                    future.fail(e);
+                }
+            }
+        }, false, new Handler<AsyncResult<Void>>() {
+            @Override
+            public void handle(AsyncResult<Void> event) {
+                // on failure (e.g.: read only file system) the file keeps being served uncompressed
+                if (event.failed()) {
+                    compressFailed.put(file, props.lastModifiedTime());
+                } else {
+                    compressFailed.remove(file);
+                }
+                compressing.remove(file);
+            }
+        });
+    }
+
+    /**
+     * Parses a Range header.
+     *
+     * @param header the header value
+     * @param size   the file size
+     * @return the first and last byte of every satisfiable range (overlapping and adjacent ranges are coalesced and
+     * sorted), an empty array if none is satisfiable or null when the header must be ignored (invalid syntax, unknown
+     * unit or too many ranges)
+     */
+    static long[] parseRanges(String header, long size) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+
+        final String[] specs = header.substring(6).split(",");
+
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        final long[] ranges = new long[specs.length * 2];
+        int count = 0;
+
+        for (String spec : specs) {
+            spec = spec.trim();
+            final int dash = spec.indexOf('-');
+
+            if (dash == -1) {
+                return null;
+            }
+
+            long first;
+            long last;
+
+            try {
+                if (dash == 0) {
+                    // suffix range, the last n bytes
+                    final long n = Long.parseLong(spec.substring(1));
+                    if (n < 0) {
+                        return null;
+                    }
+                    if (n == 0) {
+                        continue;
+                    }
+                    first = Math.max(0, size - n);
+                    last = size - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (first < 0 || last < first) {
+                        return null;
+                    }
+                    last = Math.min(last, size - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (first >= size) {
+                // not satisfiable, the other ranges may still be
+                continue;
+            }
+
+            ranges[count++] = first;
+            ranges[count++] = last;
+        }
+
+        return coalesce(ranges, count);
+    }
+
+    /**
+     * Sorts the ranges and merges the ones that overlap or touch, so a client cannot make us send the same bytes
+     * several times.
+     */
+    private static long[] coalesce(final long[] ranges, final int count) {
+        if (count <= 2) {
+            return count == ranges.length ? ranges : Arrays.copyOf(ranges, count);
+        }
+
+        final int n = count / 2;
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(ranges[2 * a], ranges[2 * b]);
+            }
+        });
+
+        final long[] merged = new long[count];
+        int size = 0;
+
+        for (int i : order) {
+            final long first = ranges[2 * i];
+            final long last = ranges[2 * i + 1];
+
+            if (size > 0 && first <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], last);
+            } else {
+                merged[size++] = first;
+                merged[size++] = last;
+            }
+        }
+
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Value of the Content-Range header of a response to a range request.
+     *
+     * @param ranges first and last byte of each range as returned by parseRanges, empty if none is satisfiable
+     * @param i      the range to describe
+     * @param size   the file size
+     */
+    static String contentRange(final long[] ranges, final int i, final long size) {
+        if (ranges.length == 0) {
+            return "bytes */" + size;
+        }
+        return "bytes " + ranges[2 * i] + "-" + ranges[2 * i + 1] + "/" + size;
+    }
+
+    /**
+     * Verifies the If-Range precondition, ranges are only sent if the representation did not change.
+     *
+     * @param ifRange the If-Range header or null
+     * @param etag the etag of the selected representation
+     * @param lastModified the last modified date of the selected representation or null if it cannot be used
+     */
+    static boolean ifRange(final String ifRange, final String etag, final String lastModified) {
+        // our etags are strong so both validators can be compared by value
+        return ifRange == null || ifRange.equals(etag) || ifRange.equals(lastModified);
+    }
+
+    /**
+     * Write the requested ranges of a file into the response body
+     *
+     * @param request
+     * @param file the requested file, used to find the content type
+     * @param body the file to send (the requested one or a precompressed sibling)
+     * @param bodyEntry the file to send properties
+     * @param encoding the content encoding of the body file or null
+     * @param ranges first and last byte of each range as returned by parseRanges
+     * @param next
+     */
+    private void sendRanges(final YokeRequest request, final String file, final String body, final FileEntry bodyEntry, final String encoding, final long[] ranges, final Handler<Object> next) {
+        final YokeResponse response = request.response();
+        final long size = bodyEntry.props.size();
+
+        // ranges address the selected representation as stored, they cannot be compressed on the fly
+        response.setFilter(null);
+        response.putHeader("Accept-Ranges", "bytes");
+
+        if (ranges.length == 0) {
+            response.putHeader("Content-Range", contentRange(ranges, 0, size));
+            response.setStatusCode(416);
+            response.end();
+            return;
+        }
+
+        if (encoding != null) {
+            response.putHeader("Content-Encoding", encoding);
+        }
+
+        final String contentType = MimeType.getMime(file);
+        final String charset = MimeType.getCharset(contentType);
+
+        if (ranges.length == 2) {
+            response.setStatusCode(206);
+            response.setContentType(contentType, charset);
+            response.putHeader("Content-Range", contentRange(ranges, 0, size));
+            response.putHeader("Content-Length", Long.toString(ranges[1] - ranges[0] + 1));
+            response.sendFile(body, ranges[0], ranges[1] - ranges[0] + 1);
+            return;
+        }
+
+        final String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        final String partType = charset == null ? contentType : contentType + ";charset=" + charset;
+        final Buffer[] heads = new Buffer[ranges.length / 2];
+        final Buffer tail = Buffer.buffer("\r\n--" + boundary + "--\r\n");
+        long length = tail.length();
+
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = Buffer.buffer(
+                    "\r\n--" + boundary +
+                    "\r\nContent-Type: " + partType +
+                    "\r\nContent-Range: " + contentRange(ranges, i, size) +
+                    "\r\n\r\n");
+            length += heads[i].length() + ranges[2 * i + 1] - ranges[2 * i] + 1;
+        }
+
+        final long contentLength = length;
+
+        vertx().fileSystem().open(body, new OpenOptions().setRead(true).setWrite(false).setCreate(false), new AsyncResultHandler<AsyncFile>() {
+            @Override
+            public void handle(AsyncResult<AsyncFile> asyncResult) {
+                if (asyncResult.failed()) {
+                    next.handle(asyncResult.cause());
+                    return;
+                }
+
+                response.setStatusCode(206);
+                response.putHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                response.putHeader("Content-Length", Long.toString(contentLength));
+
+                new MultipartWriter(response, asyncResult.result(), ranges, heads, tail).handle(null);
+            }
+        });
+    }
+
+    /**
+     * Writes the parts of a multipart/byteranges body in chunks, waiting for the response to drain when its write
+     * queue is full.
+     */
+    private static final class MultipartWriter implements Handler<Void> {
+
+        private final YokeResponse response;
+        private final AsyncFile asyncFile;
+        private final long[] ranges;
+        private final Buffer[] heads;
+        private final Buffer tail;
+
+        private int part;
+        // next byte to send of the current part, -1 when the part head was not sent yet
+        private long position = -1;
+        // the client went away or the body is complete, the file is closed
+        private boolean closed;
+
+        MultipartWriter(YokeResponse response, AsyncFile asyncFile, long[] ranges, Buffer[] heads, Buffer tail) {
+            this.response = response;
+            this.asyncFile = asyncFile;
+            this.ranges = ranges;
+            this.heads = heads;
+            this.tail = tail;
+
+            // after a disconnect the write queue never drains, release the file here
+            response.closeHandler(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    close();
+                }
+            });
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                asyncFile.close();
+            }
+        }
+
+        @Override
+        public void handle(Void event) {
+            if (closed) {
+                return;
+            }
+
+            while (!response.writeQueueFull()) {
+                if (part == heads.length) {
+                    close();
+                    response.end(tail);
+                    return;
+                }
+
+                if (position == -1) {
+                    response.write(heads[part]);
+                    position = ranges[2 * part];
+                    continue;
+                }
+
+                final long end = ranges[2 * part + 1] + 1;
+
+                if (position == end) {
+                    part++;
+                    position = -1;
+                    continue;
+                }
+
+                final int len = (int) Math.min(RANGE_CHUNK_SIZE, end - position);
+
+                asyncFile.read(Buffer.buffer(len), 0, position, len, new AsyncResultHandler<Buffer>() {
+                    @Override
+                    public void handle(AsyncResult<Buffer> asyncResult) {
+                        if (closed) {
+                            return;
+                        }
+                        if (asyncResult.failed() || asyncResult.result().length() != len) {
+                            // the content length was already sent, the only way to signal the error is to close
+                            close();
+                            response.close();
+                            return;
+                        }
+                        position += len;
+                        response.write(asyncResult.result());
+                        MultipartWriter.this.handle(null);
+                    }
+                });
+                return;
+            }
+
+            response.drainHandler(this);
+        }
+    }
+
+    /**
+     * Returns the quality value of a given coding in a Accept-Encoding header.
+     *
+     * @param accept the header value
+     * @param coding the coding to look up
+     * @return 0 when not acceptable
+     */
+    private static float quality(String accept, String coding) {
+        float wildcard = 0;
+
+        for (String token : accept.split(",")) {
+            final String[] parts = token.split(";");
+            final String name = parts[0].trim();
+            float q = 1;
+
+            for (int i = 1; i < parts.length; i++) {
+                final String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+
+            if (coding.equalsIgnoreCase(name)) {
+                return q;
+            }
+            if ("*".equals(name)) {
+                wildcard = q;
+            }
+        }
+
+        return wildcard;
     }
 
     /**
@@ -334,8 +1179,8 @@ public class Static extends Middleware {
             }
         }
 
-        // if-modified-since
-        if (modifiedSince != null) {
+        // if-modified-since, clients usually send back the exact last-modified value
+        if (modifiedSince != null && !modifiedSince.equals(lastModified)) {
             try {
                 Date modifiedSinceDate = parse(modifiedSince);
                 Date lastModifiedDate = parse(lastModified);
@@ -372,54 +1217,41 @@ public class Static extends Middleware {
                 }
             }
 
-            final FileSystem fileSystem = vertx().fileSystem();
-
-            fileSystem.exists(file, new AsyncResultHandler<Boolean>() {
+            stat(file, new Handler<AsyncResult<FileEntry>>() {
                 @Override
-                public void handle(AsyncResult<Boolean> asyncResult) {
+                public void handle(AsyncResult<FileEntry> asyncResult) {
                     if (asyncResult.failed()) {
                         next.handle(asyncResult.cause());
-                    } else {
-                        if (!asyncResult.result()) {
-                            // no static file found, let the next middleware handle it
-                            next.handle(null);
+                        return;
+                    }
+
+                    final FileEntry entry = asyncResult.result();
+
+                    if (entry.props == null) {
+                        // no static file found, let the next middleware handle it
+                        next.handle(null);
+                    } else if (entry.props.isDirectory()) {
+                        if (directoryListing) {
+                            // write cache control headers
+                            writeHeaders(request, entry);
+                            // verify if we are still fresh
+                            if (isFresh(request)) {
+                                request.response().setStatusCode(304);
+                                request.response().end();
+                            } else {
+                                sendDirectory(request, file, next);
+                            }
                         } else {
-                            fileSystem.props(file, new AsyncResultHandler<FileProps>() {
-                                @Override
-                                public void handle(AsyncResult<FileProps> props) {
-                                    if (props.failed()) {
-                                        next.handle(props.cause());
-                                    } else {
-                                        if (props.result().isDirectory()) {
-                                            if (directoryListing) {
-                                                // write cache control headers
-                                                writeHeaders(request, props.result());
-                                                // verify if we are still fresh
-                                                if (isFresh(request)) {
-                                                    request.response().setStatusCode(304);
-                                                    request.response().end();
-                                                } else {
-                                                    sendDirectory(request, file, next);
-                                                }
-                                            } else {
-                                                // we are not listing directories
-                                                next.handle(null);
-                                            }
-                                        } else {
-                                            // write cache control headers
-                                            writeHeaders(request, props.result());
-                                            // verify if we are still fresh
-                                            if (isFresh(request)) {
-                                                request.response().setStatusCode(304);
-                                                request.response().end();
-                                            } else {
-                                                sendFile(request, file, props.result());
-                                            }
-                                        }
-                                    }
-                                }
-                            });
+                            // we are not listing directories
+                            next.handle(null);
                         }
+                    } else if (precompressed) {
+                        // the representation depends on the accept-encoding header, not modified responses included
+                        request.response().putHeader("Vary", "Accept-Encoding");
+                        // validators are only known once the representation is selected
+                        sendPrecompressed(request, file, entry, next);
+                    } else {
+                        send(request, file, entry, file, entry, null, next);
                     }
                 }
             });
@@ -32,6 +32,9 @@ import io.vertx.core.net.NetSocket;
 import com.jetdrone.vertx.yoke.core.Context;
 import com.jetdrone.vertx.yoke.core.YokeCookie;
 import com.jetdrone.vertx.yoke.core.YokeFileUpload;
+import com.jetdrone.vertx.yoke.core.ServerTiming;
+import com.jetdrone.vertx.yoke.core.YokeSession;
+import com.jetdrone.vertx.yoke.core.impl.CookieJar;
 import com.jetdrone.vertx.yoke.store.SessionStore;
 
 /** YokeRequest is an extension to Vert.x *HttpServerRequest* with some helper methods to make it easier to perform common
@@ -68,6 +71,17 @@ public class YokeRequest implements HttpServerRequest {
         }
     };
 
+    // session store callback
+    private static final Handler<Object> LOG_ERROR = new Handler<Object>() {
+        @Override
+        public void handle(Object error) {
+            if (error != null) {
+                // TODO: better handling of errors
+                System.err.println(error);
+            }
+        }
+    };
+
     // the original request (if extensions need to access it, use the accessor)
     final private HttpServerRequest request;
     // the wrapped response (if extensions need to access it, use the accessor)
@@ -83,7 +97,11 @@ public class YokeRequest implements HttpServerRequest {
     // the body is protected so extensions can access the raw object instead of casted versions.
     protected Object body;
     private Map<String, YokeFileUpload> files;
-    private Set<YokeCookie> cookies;
+    private CookieJar cookies;
+    // milliseconds a session lives without being used, 0 for the store default
+    private long sessionMaxAge;
+    // per middleware timing, only when requested
+    private ServerTiming timing;
     // control flags
     private boolean expectMultiPartCalled = false;
 
@@ -182,25 +200,24 @@ public class YokeRequest implements HttpServerRequest {
     }
 
     /**
-     * Access all request cookies
+     * Access all request cookies, this decodes (and verifies) every cookie so prefer getCookie when the name is known.
      * @return Set of cookies
      */
     public Set<YokeCookie> cookies() {
-        return cookies;
+        if (cookies != null) {
+            return cookies.all();
+        }
+        return null;
     }
 
-    /** Allow getting Cookie by name.
+    /** Allow getting Cookie by name. Only the requested cookie is decoded.
      *
      * @param name The key to get
      * @return The found object
      */
     public YokeCookie getCookie(@NotNull final String name) {
         if (cookies != null) {
-            for (YokeCookie c : cookies) {
-                if (name.equals(c.name())) {
-                    return c;
-                }
-            }
+            return cookies.get(name);
         }
         return null;
     }
@@ -213,11 +230,7 @@ public class YokeRequest implements HttpServerRequest {
     public List<YokeCookie> getAllCookies(@NotNull final String name) {
         List<YokeCookie> foundCookies = new ArrayList<>();
         if (cookies != null) {
-            for (YokeCookie c : cookies) {
-                if (name.equals(c.name())) {
-                    foundCookies.add(c);
-                }
-            }
+            foundCookies.addAll(cookies.getAll(name));
         }
         return foundCookies;
     }
@@ -305,13 +318,27 @@ public class YokeRequest implements HttpServerRequest {
         this.files = files;
     }
 
+    /** Time spent by each middleware, null unless a middleware (e.g.: ResponseTime) enabled it */
+    public ServerTiming timing() {
+        return timing;
+    }
+
+    void setTiming(ServerTiming timing) {
+        this.timing = timing;
+    }
+
     /** Cookies */
-    void setCookies(Set<YokeCookie> cookies) {
+    void setCookies(CookieJar cookies) {
         this.cookies = cookies;
     }
 
     // Session management
 
+    /** Session expiration */
+    void setSessionMaxAge(long maxAge) {
+        this.sessionMaxAge = maxAge;
+    }
+
     /** Destroys a session from the request context and also from the storage engine.
      */
     public void destroySession() {
@@ -328,15 +355,7 @@ public class YokeRequest implements HttpServerRequest {
             return;
         }
 
-        store.destroy(sessionId, new Handler<Object>() {
-            @Override
-            public void handle(Object error) {
-                if (error != null) {
-                    // TODO: better handling of errors
-                    System.err.println(error);
-                }
-            }
-        });
+        store.destroy(sessionId, LOG_ERROR);
     }
 
     /** Loads a session given its session id and sets the "session" property in the request context.
@@ -353,7 +372,8 @@ public class YokeRequest implements HttpServerRequest {
             @Override
             public void handle(JsonObject session) {
                 if (session != null) {
-                    put("session", session);
+                    // track changes so an unchanged session is not written back
+                    put("session", new YokeSession(session));
                 }
 
                 response().headersHandler(new Handler<Void>() {
@@ -364,15 +384,12 @@ public class YokeRequest implements HttpServerRequest {
                         if (responseStatus >= 200 && responseStatus < 400) {
                         	JsonObject session = get("session");
                             if (session != null) {
-                                store.set(sessionId, session, new Handler<Object>() {
-                                    @Override
-                                    public void handle(Object error) {
-                                        if (error != null) {
-                                            // TODO: better handling of errors
-                                            System.err.println(error);
-                                        }
-                                    }
-                                });
+                                if (session instanceof YokeSession && !((YokeSession) session).isDirty()) {
+                                    // only extend the expiration
+                                    store.touch(sessionId, session, sessionMaxAge, LOG_ERROR);
+                                } else {
+                                    store.set(sessionId, session, sessionMaxAge, LOG_ERROR);
+                                }
                             }
                         }
                     }
@@ -415,15 +432,7 @@ public class YokeRequest implements HttpServerRequest {
                 if (responseStatus >= 200 && responseStatus < 400) {
                 	JsonObject session = get("session");
                     if (session != null) {
-                        store.set(sessionId, session, new Handler<Object>() {
-                            @Override
-                            public void handle(Object error) {
-                                if (error != null) {
-                                    // TODO: better handling of errors
-                                    System.err.println(error);
-                                }
-                            }
-                        });
+                        store.set(sessionId, session, sessionMaxAge, LOG_ERROR);
                     }
                 }
             }
@@ -6,6 +6,7 @@ package com.jetdrone.vertx.yoke.middleware;
 import com.jetdrone.vertx.yoke.Engine;
 import com.jetdrone.vertx.yoke.MimeType;
 import com.jetdrone.vertx.yoke.core.Context;
+import com.jetdrone.vertx.yoke.middleware.filters.StreamingWriterFilter;
 import com.jetdrone.vertx.yoke.middleware.filters.WriterFilter;
 import com.jetdrone.vertx.yoke.core.YokeException;
 import io.netty.handler.codec.http.cookie.Cookie;
@@ -38,6 +39,7 @@ public class YokeResponse implements HttpServerResponse {
     private List<Handler<Void>> headersHandler;
     private boolean headersHandlerTriggered;
     private List<Handler<Void>> endHandler;
+    private List<Handler<Void>> closeHandler;
 
     // writer filter
     private WriterFilter filter;
@@ -292,13 +294,35 @@ public class YokeResponse implements HttpServerResponse {
                 String contentType = response.headers().get("content-type");
                 if (contentType != null && filter.canFilter(contentType)) {
                     response.putHeader("content-encoding", filter.encoding());
+                    if (filter instanceof StreamingWriterFilter) {
+                        final StreamingWriterFilter streaming = (StreamingWriterFilter) filter;
+                        // the original length does not apply to the compressed body
+                        response.headers().remove("content-length");
+                        // a client that goes away before end would leave the filter (native zlib state) to the GC
+                        closeHandler(new Handler<Void>() {
+                            @Override
+                            public void handle(Void event) {
+                                streaming.abort();
+                            }
+                        });
+                        streaming.output(new Handler<Buffer>() {
+                            @Override
+                            public void handle(Buffer chunk) {
+                                // the final size is unknown once data is sent before end
+                                if (!response.isChunked()) {
+                                    response.setChunked(true);
+                                }
+                                response.write(chunk);
+                            }
+                        });
+                    }
                 } else {
                     // disable the filter
                     filter = null;
                 }
             }
             // if there is no content and method is not HEAD delete content-type, content-encoding
-            if (!hasBody && !"HEAD".equals(method)) {
+            if (!hasBody && method != HttpMethod.HEAD) {
                 response.headers().remove("content-encoding");
                 response.headers().remove("content-type");
             }
@@ -406,9 +430,24 @@ public class YokeResponse implements HttpServerResponse {
         return this;
     }
 
+    /**
+     * Adds a handler called if the connection is closed, unlike a plain response all the handlers are kept so
+     * middleware and the framework can each register their own.
+     */
     @Override
     public YokeResponse closeHandler(Handler<Void> handler) {
-        response.closeHandler(handler);
+        if (closeHandler == null) {
+            closeHandler = new ArrayList<>();
+            response.closeHandler(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    for (Handler<Void> h : closeHandler) {
+                        h.handle(null);
+                    }
+                }
+            });
+        }
+        closeHandler.add(handler);
         return this;
     }
 
@@ -505,7 +544,12 @@ public class YokeResponse implements HttpServerResponse {
     @Override
     public void end() {
         triggerHeadersHandlers();
-        response.end();
+        if (filter == null || !hasBody) {
+            response.end();
+        } else {
+            // a body was written, finish the compressed stream (trailer) and release the filter
+            response.end(filter.end(Buffer.buffer()));
+        }
         triggerEndHandlers();
     }
 
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware.filters;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * # AbstractDeflaterWriterFilter
+ *
+ * Streaming compression filter. Input is fed to a Deflater and the compressed bytes are collected in a fixed size
+ * array, every time the array fills up it is emitted to the output handler (the underlying response) so the memory
+ * used per response is bounded by the chunk size plus the Deflater window, regardless of the body size.
+ *
+ * Since compressed chunks are written as they are produced, the underlying response write queue reflects what has
+ * not been sent yet and writeQueueFull/drainHandler on the YokeResponse can be used for backpressure as usual.
+ */
+public abstract class AbstractDeflaterWriterFilter implements StreamingWriterFilter {
+
+    private static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    // scratch space to copy direct buffers, deflate is synchronous so it can be shared by all filters of a thread
+    private static final ThreadLocal<byte[]> INPUT = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[DEFAULT_CHUNK_SIZE];
+        }
+    };
+
+    private final Pattern filter;
+    private final int level;
+    private final boolean nowrap;
+    private final int chunkSize;
+
+    private Handler<Buffer> output;
+    private Deflater deflater;
+    private byte[] out;
+    private int outPos;
+    private boolean headerWritten;
+    // the client went away, nothing else is compressed
+    private boolean aborted;
+
+    protected AbstractDeflaterWriterFilter(@NotNull final Pattern filter, boolean nowrap) {
+        this(filter, Deflater.DEFAULT_COMPRESSION, nowrap, DEFAULT_CHUNK_SIZE);
+    }
+
+    protected AbstractDeflaterWriterFilter(@NotNull final Pattern filter, int level, boolean nowrap, int chunkSize) {
+        this.filter = filter;
+        this.level = level;
+        this.nowrap = nowrap;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Bytes to write before the compressed stream.
+     */
+    protected byte[] header() {
+        return null;
+    }
+
+    /**
+     * Called with every uncompressed chunk (e.g.: to update a checksum).
+     */
+    protected void update(byte[] b, int off, int len) {
+    }
+
+    /**
+     * Bytes to write after the compressed stream.
+     *
+     * @param totalIn number of uncompressed bytes
+     */
+    protected byte[] trailer(long totalIn) {
+        return null;
+    }
+
+    @Override
+    public void output(Handler<Buffer> output) {
+        this.output = output;
+    }
+
+    private void init() {
+        if (deflater == null) {
+            deflater = new Deflater(level, nowrap);
+            out = new byte[chunkSize];
+            outPos = 0;
+        }
+
+        if (!headerWritten) {
+            headerWritten = true;
+            final byte[] header = header();
+            if (header != null) {
+                append(header);
+            }
+        }
+    }
+
+    private void append(byte[] b) {
+        int off = 0;
+        while (off < b.length) {
+            final int len = Math.min(b.length - off, out.length - outPos);
+            System.arraycopy(b, off, out, outPos, len);
+            outPos += len;
+            off += len;
+            if (outPos == out.length) {
+                emit();
+            }
+        }
+    }
+
+    /**
+     * Called when the output array is full.
+     */
+    private void emit() {
+        if (output != null) {
+            output.handle(Buffer.buffer(outPos).appendBytes(out, 0, outPos));
+            outPos = 0;
+        } else {
+            // nowhere to stream to, grow (same as the buffered filters)
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final int n = deflater.deflate(out, outPos, out.length - outPos);
+            outPos += n;
+            if (outPos == out.length) {
+                emit();
+            } else if (n == 0) {
+                break;
+            }
+        }
+    }
+
+    private void deflate(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        update(b, off, len);
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    private void deflate(Buffer buffer) {
+        final ByteBuf bb = buffer.getByteBuf();
+        final int len = bb.readableBytes();
+
+        if (bb.hasArray()) {
+            deflate(bb.array(), bb.arrayOffset() + bb.readerIndex(), len);
+        } else {
+            final byte[] scratch = INPUT.get();
+            int idx = bb.readerIndex();
+            final int end = idx + len;
+            while (idx < end) {
+                final int n = Math.min(scratch.length, end - idx);
+                bb.getBytes(idx, scratch, 0, n);
+                deflate(scratch, 0, n);
+                idx += n;
+            }
+        }
+    }
+
+    private Buffer finish() {
+        deflater.finish();
+        while (!deflater.finished()) {
+            final int n = deflater.deflate(out, outPos, out.length - outPos);
+            outPos += n;
+            if (outPos == out.length) {
+                emit();
+            }
+        }
+
+        final byte[] trailer = trailer(deflater.getBytesRead());
+        final Buffer tail = Buffer.buffer(outPos + (trailer != null ? trailer.length : 0));
+        tail.appendBytes(out, 0, outPos);
+        if (trailer != null) {
+            tail.appendBytes(trailer);
+        }
+
+        release();
+
+        return tail;
+    }
+
+    /**
+     * Releases the native memory of the deflater.
+     */
+    private void release() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        out = null;
+        outPos = 0;
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+        release();
+    }
+
+    @Override
+    public void write(@NotNull final Buffer buffer) {
+        if (aborted) {
+            return;
+        }
+        init();
+        deflate(buffer);
+    }
+
+    @Override
+    public void write(@NotNull final String chunk) {
+        if (aborted) {
+            return;
+        }
+        init();
+        final byte[] b = chunk.getBytes(StandardCharsets.UTF_8);
+        deflate(b, 0, b.length);
+    }
+
+    @Override
+    public void write(@NotNull final String chunk, @NotNull final String enc) {
+        if (aborted) {
+            return;
+        }
+        init();
+        final byte[] b = chunk.getBytes(Charset.forName(enc));
+        deflate(b, 0, b.length);
+    }
+
+    @Override
+    public Buffer end(@NotNull final Buffer buffer) {
+        write(buffer);
+        return aborted ? Buffer.buffer() : finish();
+    }
+
+    @Override
+    public Buffer end(@NotNull final String chunk) {
+        write(chunk);
+        return aborted ? Buffer.buffer() : finish();
+    }
+
+    @Override
+    public Buffer end(@NotNull final String chunk, @NotNull final String enc) {
+        write(chunk, enc);
+        return aborted ? Buffer.buffer() : finish();
+    }
+
+    @Override
+    public boolean canFilter(@NotNull final String contentType) {
+        return filter.matcher(contentType).find();
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware.filters;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.regex.Pattern;
+
+/**
+ * # DeflateStreamingWriterFilter
+ *
+ * HTTP deflate content encoding, which is the zlib format (RFC 1950) so the Deflater adds the header and checksum.
+ */
+public class DeflateStreamingWriterFilter extends AbstractDeflaterWriterFilter {
+
+    public DeflateStreamingWriterFilter(@NotNull final Pattern filter) {
+        super(filter, false);
+    }
+
+    public DeflateStreamingWriterFilter(@NotNull final Pattern filter, int level, int chunkSize) {
+        super(filter, level, false, chunkSize);
+    }
+
+    @Override
+    public String encoding() {
+        return "deflate";
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware.filters;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * # GZipStreamingWriterFilter
+ */
+public class GZipStreamingWriterFilter extends AbstractDeflaterWriterFilter {
+
+    private static final byte[] HEADER = {
+            (byte) 0x1f, (byte) 0x8b,   // magic number
+            8,                          // compression method (deflate)
+            0,                          // flags
+            0, 0, 0, 0,                 // modification time
+            0,                          // extra flags
+            0                           // operating system
+    };
+
+    private final CRC32 crc = new CRC32();
+
+    public GZipStreamingWriterFilter(@NotNull final Pattern filter) {
+        super(filter, true);
+    }
+
+    public GZipStreamingWriterFilter(@NotNull final Pattern filter, int level, int chunkSize) {
+        super(filter, level, true, chunkSize);
+    }
+
+    @Override
+    protected byte[] header() {
+        return HEADER;
+    }
+
+    @Override
+    protected void update(byte[] b, int off, int len) {
+        crc.update(b, off, len);
+    }
+
+    @Override
+    protected byte[] trailer(long totalIn) {
+        final long checksum = crc.getValue();
+        return new byte[] {
+                (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+                (byte) totalIn, (byte) (totalIn >> 8), (byte) (totalIn >> 16), (byte) (totalIn >> 24)
+        };
+    }
+
+    @Override
+    public String encoding() {
+        return "gzip";
+    }
+}
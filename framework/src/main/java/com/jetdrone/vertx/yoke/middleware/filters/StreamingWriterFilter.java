@@ -0,0 +1,28 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware.filters;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * # StreamingWriterFilter
+ *
+ * A WriterFilter that does not hold the whole body in memory. Filtered chunks are handed to the output handler as
+ * soon as they are available and end only returns what is left to write.
+ */
+public interface StreamingWriterFilter extends WriterFilter {
+
+    /**
+     * Sets the handler that receives the filtered chunks before end is called.
+     *
+     * @param output handler writing to the underlying response
+     */
+    void output(Handler<Buffer> output);
+
+    /**
+     * Called when the response is closed before end, releases the resources of the filter. Later writes are ignored.
+     */
+    void abort();
+}
@@ -4,10 +4,20 @@ import com.jetdrone.vertx.yoke.YokeSecurity;
 import io.vertx.core.json.JsonObject;
 
 import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * # JWT
+ *
+ * JSON Web Token encoder/decoder. Mac and Signature instances are not thread safe, instead of sharing one behind a
+ * lock every thread (event loop or worker) gets its own, so verification never contends. Verified tokens are kept in a
+ * bounded cache until they expire, a token seen again skips the base64, JSON and crypto work.
+ */
 public final class JWT {
 
     private interface Crypto {
@@ -16,41 +26,74 @@ public final class JWT {
     }
 
     private static final class CryptoMac implements Crypto {
-        private final Mac mac;
+        private final ThreadLocal<Mac> mac;
+
+        private CryptoMac(final YokeSecurity security, final String alias) {
+            // fail early if the algorithm is not supported
+            final Mac first = security.getMac(alias);
+
+            mac = new ThreadLocal<Mac>() {
+                @Override
+                protected Mac initialValue() {
+                    return security.getMac(alias);
+                }
+            };
 
-        private CryptoMac(final Mac mac) {
-            this.mac = mac;
+            mac.set(first);
         }
 
         @Override
         public byte[] sign(byte[] payload) {
-            synchronized (mac) {
-                return mac.doFinal(payload);
-            }
+            return mac.get().doFinal(payload);
         }
 
         @Override
         public boolean verify(byte[] signature, byte[] payload) {
-            synchronized (mac) {
-                return Arrays.equals(signature, mac.doFinal(payload));
-            }
+            // constant time comparison
+            return MessageDigest.isEqual(signature, mac.get().doFinal(payload));
         }
     }
 
     private static final class CryptoSignature implements Crypto {
-        private final Signature sig;
+        private final ThreadLocal<Signature> signer;
+        private final ThreadLocal<Signature> verifier;
+
+        private CryptoSignature(final YokeSecurity security, final String alias) {
+            // fail early if the algorithm is not supported
+            final Signature first = security.getSignature(alias);
 
-        private CryptoSignature(final Signature signature) {
-            this.sig = signature;
+            signer = new ThreadLocal<Signature>() {
+                @Override
+                protected Signature initialValue() {
+                    return security.getSignature(alias);
+                }
+            };
+
+            signer.set(first);
+
+            final Signature firstVerifier = security.getVerifier(alias);
+
+            if (firstVerifier == null) {
+                // the security implementation cannot verify, fall back to signing and comparing
+                verifier = null;
+            } else {
+                verifier = new ThreadLocal<Signature>() {
+                    @Override
+                    protected Signature initialValue() {
+                        return security.getVerifier(alias);
+                    }
+                };
+
+                verifier.set(firstVerifier);
+            }
         }
 
         @Override
         public byte[] sign(byte[] payload) {
             try {
-                synchronized (sig) {
-                    sig.update(payload);
-                    return sig.sign();
-                }
+                final Signature sig = signer.get();
+                sig.update(payload);
+                return sig.sign();
             } catch (SignatureException e) {
                 throw new RuntimeException(e);
             }
@@ -58,39 +101,71 @@ public final class JWT {
 
         @Override
         public boolean verify(byte[] signature, byte[] payload) {
+            if (verifier == null) {
+                return MessageDigest.isEqual(signature, sign(payload));
+            }
+
             try {
-                synchronized (sig) {
-                    sig.update(payload);
-                    return Arrays.equals(signature, sig.sign());
-                }
+                final Signature sig = verifier.get();
+                sig.update(payload);
+                return sig.verify(signature);
             } catch (SignatureException e) {
-                throw new RuntimeException(e);
+                // malformed signature
+                return false;
             }
         }
     }
 
+    private static final class Verified {
+        private final JsonObject payload;
+        // millis
+        private final long expires;
+
+        private Verified(JsonObject payload, long expires) {
+            this.payload = payload;
+            this.expires = expires;
+        }
+    }
+
+    // tokens of one issuer share a handful of distinct headers
+    private static final int MAX_HEADERS = 64;
+
     private final Map<String, Crypto> CRYPTO_MAP;
 
+    private final ConcurrentHashMap<String, String> headerAlg = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Verified> verified = new ConcurrentHashMap<>();
+    private final int maxVerified;
+
     public JWT(final YokeSecurity security) {
+        this(security, 1024);
+    }
+
+    /**
+     * @param security    the keys to sign and verify tokens
+     * @param maxVerified number of verified tokens to remember, 0 to verify every decode
+     */
+    public JWT(final YokeSecurity security, final int maxVerified) {
+
+        this.maxVerified = maxVerified;
 
         Map<String, Crypto> tmp = new HashMap<>();
         try {
-            tmp.put("HS256", new CryptoMac(security.getMac("HS256")));
+            tmp.put("HS256", new CryptoMac(security, "HS256"));
         } catch (RuntimeException e) {
             // Algorithm not supported
         }
         try {
-            tmp.put("HS384", new CryptoMac(security.getMac("HS384")));
+            tmp.put("HS384", new CryptoMac(security, "HS384"));
         } catch (RuntimeException e) {
             // Algorithm not supported
         }
         try {
-            tmp.put("HS512", new CryptoMac(security.getMac("HS512")));
+            tmp.put("HS512", new CryptoMac(security, "HS512"));
         } catch (RuntimeException e) {
             // Algorithm not supported
         }
         try {
-            tmp.put("RS256", new CryptoSignature(security.getSignature("RS256")));
+            tmp.put("RS256", new CryptoSignature(security, "RS256"));
         } catch (RuntimeException e) {
             // Algorithm not supported
         }
@@ -103,38 +178,94 @@ public final class JWT {
     }
 
     public JsonObject decode(final String token, boolean noVerify) {
-        String[] segments = token.split("\\.");
-        if (segments.length != 3) {
+        if (!noVerify && maxVerified > 0) {
+            final Verified cached = verified.get(token);
+
+            if (cached != null) {
+                if (cached.expires > System.currentTimeMillis()) {
+                    // callers may modify the result
+                    return cached.payload.copy();
+                }
+                verified.remove(token, cached);
+            }
+        }
+
+        // single pass split, exactly 2 dots
+        final int dot1 = token.indexOf('.');
+        final int dot2 = dot1 == -1 ? -1 : token.indexOf('.', dot1 + 1);
+
+        if (dot2 == -1 || token.indexOf('.', dot2 + 1) != -1) {
             throw new RuntimeException("Not enough or too many segments");
         }
 
         // All segment should be base64
-        String headerSeg = segments[0];
-        String payloadSeg = segments[1];
-        String signatureSeg = segments[2];
+        String headerSeg = token.substring(0, dot1);
+        String payloadSeg = token.substring(dot1 + 1, dot2);
+        String signatureSeg = token.substring(dot2 + 1);
 
         // base64 decode and parse JSON
-        JsonObject header = new JsonObject(new String(Base64.getUrlDecoder().decode(headerSeg)));
-        JsonObject payload = new JsonObject(new String(Base64.getUrlDecoder().decode(payloadSeg)));
+        JsonObject payload = new JsonObject(new String(Base64.getUrlDecoder().decode(payloadSeg), StandardCharsets.UTF_8));
 
         if (!noVerify) {
-            Crypto crypto = CRYPTO_MAP.get(header.getString("alg"));
+            Crypto crypto = CRYPTO_MAP.get(algorithm(headerSeg));
 
             if (crypto == null) {
                 throw new RuntimeException("Algorithm not supported");
             }
 
-            // verify signature. `sign` will return base64 string.
-            String signingInput = headerSeg + "." + payloadSeg;
+            // verify signature, the signing input is the ASCII of the first 2 segments
+            final byte[] signingInput = new byte[dot2];
+            for (int i = 0; i < dot2; i++) {
+                signingInput[i] = (byte) token.charAt(i);
+            }
 
-            if (!crypto.verify(Base64.getUrlDecoder().decode(signatureSeg), signingInput.getBytes())) {
+            if (!crypto.verify(Base64.getUrlDecoder().decode(signatureSeg), signingInput)) {
                 throw new RuntimeException("Signature verification failed");
             }
+
+            if (maxVerified > 0) {
+                remember(token, payload);
+            }
         }
 
         return payload;
     }
 
+    private String algorithm(String headerSeg) {
+        String alg = headerAlg.get(headerSeg);
+
+        if (alg == null) {
+            JsonObject header = new JsonObject(new String(Base64.getUrlDecoder().decode(headerSeg), StandardCharsets.UTF_8));
+            alg = header.getString("alg");
+
+            if (alg != null && headerAlg.size() < MAX_HEADERS) {
+                headerAlg.put(headerSeg, alg);
+            }
+        }
+
+        return alg;
+    }
+
+    private void remember(String token, JsonObject payload) {
+        final Object exp = payload.getValue("exp");
+        final long expires = exp instanceof Number ? ((Number) exp).longValue() * 1000 : Long.MAX_VALUE;
+
+        if (expires <= System.currentTimeMillis()) {
+            return;
+        }
+
+        // make room, any entry will do since all of them can be verified again
+        if (verified.size() >= maxVerified) {
+            final Iterator<String> it = verified.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        verified.put(token, new Verified(payload.copy(), expires));
+    }
+
     public String encode(JsonObject payload) {
         return encode(payload, "HS256");
     }
@@ -153,10 +284,10 @@ public final class JWT {
 
 
         // create segments, all segment should be base64 string
-        String headerSegment = Base64.getUrlEncoder().encodeToString(header.encode().getBytes());
-        String payloadSegment = Base64.getUrlEncoder().encodeToString(payload.encode().getBytes());
+        String headerSegment = Base64.getUrlEncoder().encodeToString(header.encode().getBytes(StandardCharsets.UTF_8));
+        String payloadSegment = Base64.getUrlEncoder().encodeToString(payload.encode().getBytes(StandardCharsets.UTF_8));
         String signingInput = headerSegment + "." + payloadSegment;
-        String signSegment = Base64.getUrlEncoder().encodeToString(crypto.sign(signingInput.getBytes()));
+        String signSegment = Base64.getUrlEncoder().encodeToString(crypto.sign(signingInput.getBytes(StandardCharsets.US_ASCII)));
 
         return headerSegment + "." + payloadSegment + "." + signSegment;
     }
@@ -89,6 +89,19 @@ public final class KeyStoreSecurity extends YokeSecurity {
         }
     }
 
+    public Signature getVerifier(final @NotNull String alias) {
+        try {
+            final X509Certificate certificate = (X509Certificate) keyStore.getCertificate(alias);
+
+            Signature signature = Signature.getInstance(certificate.getSigAlgName());
+            signature.initVerify(certificate.getPublicKey());
+
+            return signature;
+        } catch (NoSuchAlgorithmException | InvalidKeyException | KeyStoreException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Creates a new Crypto KEY
      * @return Key implementation
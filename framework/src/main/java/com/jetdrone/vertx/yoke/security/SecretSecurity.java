@@ -28,6 +28,7 @@ public final class SecretSecurity extends YokeSecurity {
     }
 
     private final byte[] secret;
+    private KeyPair keyPair;
 
     public SecretSecurity(@NotNull String string) {
         this(string.getBytes());
@@ -53,12 +54,32 @@ public final class SecretSecurity extends YokeSecurity {
         }
     }
 
+    /**
+     * The RSA key pair for signatures, generated on first use and kept for the lifetime of this instance so all the
+     * Signatures it creates (on any thread) sign and verify with the same keys.
+     */
+    private synchronized KeyPair getKeyPair() throws NoSuchAlgorithmException {
+        if (keyPair == null) {
+            keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        }
+        return keyPair;
+    }
+
     public Signature getSignature(final @NotNull String alias) {
         try {
-            final KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+            Signature signature = Signature.getInstance(getAlgorithm(alias));
+            signature.initSign(getKeyPair().getPrivate());
 
+            return signature;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Signature getVerifier(final @NotNull String alias) {
+        try {
             Signature signature = Signature.getInstance(getAlgorithm(alias));
-            signature.initSign(keyPair.getPrivate());
+            signature.initVerify(getKeyPair().getPublic());
 
             return signature;
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
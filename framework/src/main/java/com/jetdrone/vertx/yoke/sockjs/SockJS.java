@@ -41,6 +41,7 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.shareddata.LocalMap;
@@ -65,6 +66,7 @@ public class SockJS extends Middleware {
   private Router router;
   private LocalMap<String, SockJSSession> sessions;
   private SockJSHandlerOptions options;
+  private final FlushMetrics flushMetrics = new FlushMetrics();
 
   public SockJS(Vertx vertx, SockJSHandlerOptions options) {
     this.vertx = vertx;
@@ -139,16 +141,16 @@ public class SockJS extends Middleware {
     enabledTransports.removeAll(disabledTransports);
 
     if (enabledTransports.contains(Transport.XHR.toString())) {
-      new XhrTransport(vertx, router, sessions, options, sockHandler);
+      new XhrTransport(vertx, router, sessions, options, sockHandler).flushMetrics(flushMetrics);
     }
     if (enabledTransports.contains(Transport.EVENT_SOURCE.toString())) {
-      new EventSourceTransport(vertx, router, sessions, options, sockHandler);
+      new EventSourceTransport(vertx, router, sessions, options, sockHandler).flushMetrics(flushMetrics);
     }
     if (enabledTransports.contains(Transport.HTML_FILE.toString())) {
-      new HtmlFileTransport(vertx, router, sessions, options, sockHandler);
+      new HtmlFileTransport(vertx, router, sessions, options, sockHandler).flushMetrics(flushMetrics);
     }
     if (enabledTransports.contains(Transport.JSON_P.toString())) {
-      new JsonPTransport(vertx, router, sessions, options, sockHandler);
+      new JsonPTransport(vertx, router, sessions, options, sockHandler).flushMetrics(flushMetrics);
     }
     if (enabledTransports.contains(Transport.WEBSOCKET.toString())) {
       new WebSocketTransport(vertx, router, sessions, options, sockHandler);
@@ -158,6 +160,14 @@ public class SockJS extends Middleware {
     return this;
   }
 
+  /**
+   * Frames flushed by the polling and streaming sessions and the number of messages per frame, see
+   * SockJSHandlerOptions#setCoalesceDelay.
+   */
+  public JsonObject metrics() {
+    return flushMetrics.toJson();
+  }
+
   private Middleware createChunkingTestHandler() {
     return new Middleware() {
 
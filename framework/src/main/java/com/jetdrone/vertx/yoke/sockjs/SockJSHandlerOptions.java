@@ -33,6 +33,8 @@ public class SockJSHandlerOptions {
   public static final long DEFAULT_HEARTBEAT_INTERVAL = 25l * 1000;
   public static final int DEFAULT_MAX_BYTES_STREAMING = 128 * 1024;
   public static final String DEFAULT_LIBRARY_URL = "http://cdn.sockjs.org/sockjs-0.3.4.min.js";
+  public static final long DEFAULT_COALESCE_DELAY = 0;
+  public static final int DEFAULT_COALESCE_BYTES = 16 * 1024;
 
   private long sessionTimeout = 5l * 1000;
   private boolean insertJSESSIONID = true;
@@ -40,6 +42,8 @@ public class SockJSHandlerOptions {
   private int maxBytesStreaming = 128 * 1024;
   private String libraryURL = "http://cdn.sockjs.org/sockjs-0.3.4.min.js";
   private Set<String> disabledTransports = new HashSet<>();
+  private long coalesceDelay = DEFAULT_COALESCE_DELAY;
+  private int coalesceBytes = DEFAULT_COALESCE_BYTES;
 
   public SockJSHandlerOptions(SockJSHandlerOptions other) {
     throw new UnsupportedOperationException("todo");
@@ -59,6 +63,8 @@ public class SockJSHandlerOptions {
     this.heartbeatInterval = json.getLong("heartbeatInterval", DEFAULT_HEARTBEAT_INTERVAL);
     this.maxBytesStreaming = json.getInteger("maxBytesStreaming", DEFAULT_MAX_BYTES_STREAMING);
     this.libraryURL = json.getString("libraryURL", DEFAULT_LIBRARY_URL);
+    this.coalesceDelay = json.getLong("coalesceDelay", DEFAULT_COALESCE_DELAY);
+    this.coalesceBytes = json.getInteger("coalesceBytes", DEFAULT_COALESCE_BYTES);
     JsonArray arr = json.getJsonArray("disabledTransports");
     if (arr != null) {
       for (Object str : arr) {
@@ -126,6 +132,43 @@ public class SockJSHandlerOptions {
     return this;
   }
 
+  public long getCoalesceDelay() {
+    return coalesceDelay;
+  }
+
+  /**
+   * Milliseconds the streaming transports (xhr-streaming, eventsource, htmlfile) wait for more messages before writing
+   * the pending ones as a single frame, 0 (the default) writes every message as soon as it is sent.
+   *
+   * @param coalesceDelay the coalescing window
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SockJSHandlerOptions setCoalesceDelay(long coalesceDelay) {
+    if (coalesceDelay < 0) {
+      throw new IllegalArgumentException("coalesceDelay must be >= 0");
+    }
+    this.coalesceDelay = coalesceDelay;
+    return this;
+  }
+
+  public int getCoalesceBytes() {
+    return coalesceBytes;
+  }
+
+  /**
+   * Pending bytes that end the coalescing window early.
+   *
+   * @param coalesceBytes the maximum bytes held back
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SockJSHandlerOptions setCoalesceBytes(int coalesceBytes) {
+    if (coalesceBytes < 1) {
+      throw new IllegalArgumentException("coalesceBytes must be > 0");
+    }
+    this.coalesceBytes = coalesceBytes;
+    return this;
+  }
+
   public SockJSHandlerOptions addDisabledTransport(String subProtocol) {
     disabledTransports.add(subProtocol);
     return this;
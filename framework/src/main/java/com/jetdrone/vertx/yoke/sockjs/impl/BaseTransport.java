@@ -70,6 +70,7 @@ public class BaseTransport {
   protected final Vertx vertx;
   protected final LocalMap<String, SockJSSession> sessions;
   protected SockJSHandlerOptions options;
+  protected FlushMetrics flushMetrics;
 
   // TODO: the prefix needs to be configurable
   protected static final String COMMON_PATH_ELEMENT_RE = "\\/eventbus\\/[^\\/\\.]+\\/([^\\/\\.]+)\\/";
@@ -87,11 +88,20 @@ public class BaseTransport {
     SockJSSession session = sessions.get(sessionID);
     if (session == null) {
       session = new SockJSSession(vertx, sessions, rc, sessionID, timeout, heartbeatInterval, sockHandler);
+      session.coalesce(options.getCoalesceDelay(), options.getCoalesceBytes(), flushMetrics);
       sessions.put(sessionID, session);
     }
     return session;
   }
 
+  /**
+   * Where the sessions created by this transport record their flushes.
+   */
+  public BaseTransport flushMetrics(FlushMetrics flushMetrics) {
+    this.flushMetrics = flushMetrics;
+    return this;
+  }
+
   protected void sendInvalidJSON(HttpServerResponse response) {
     if (log.isTraceEnabled()) log.trace("Broken JSON");
     response.setStatusCode(500);
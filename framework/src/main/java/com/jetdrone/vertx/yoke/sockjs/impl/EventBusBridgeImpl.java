@@ -36,6 +36,7 @@ import com.jetdrone.vertx.yoke.sockjs.*;
 import io.vertx.core.*;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.*;
+import io.vertx.core.eventbus.impl.MessageImpl;
 import io.vertx.core.http.CaseInsensitiveHeaders;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
@@ -44,11 +45,12 @@ import io.vertx.core.logging.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static io.vertx.core.buffer.Buffer.buffer;
 
@@ -60,8 +62,10 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
   private static final Logger log = LoggerFactory.getLogger(EventBusBridgeImpl.class);
 
   private final Map<SockJSSocket, SockInfo> sockInfos = new HashMap<>();
-  private final List<PermittedOptions> inboundPermitted;
-  private final List<PermittedOptions> outboundPermitted;
+  // one event bus consumer per address, shared by all the sockets registered to it
+  private final Map<String, AddressFanout> fanouts = new HashMap<>();
+  private final PermissionMatcher inboundPermitted;
+  private final PermissionMatcher outboundPermitted;
   private final int maxAddressLength;
   private final int maxHandlersPerSocket;
   private final long pingTimeout;
@@ -69,14 +73,13 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
   private final Vertx vertx;
   private final EventBus eb;
   private final Map<String, Message> messagesAwaitingReply = new HashMap<>();
-  private final Map<String, Pattern> compiledREs = new HashMap<>();
   private final Handler<BridgeEvent> bridgeEventHandler;
 
   public EventBusBridgeImpl(Vertx vertx, BridgeOptions options, Handler<BridgeEvent> bridgeEventHandler) {
     this.vertx = vertx;
     this.eb = vertx.eventBus();
-    this.inboundPermitted = options.getInboundPermitteds() == null ? new ArrayList<>() : options.getInboundPermitteds();
-    this.outboundPermitted = options.getOutboundPermitteds() == null ? new ArrayList<>() : options.getOutboundPermitteds();
+    this.inboundPermitted = new PermissionMatcher(options.getInboundPermitteds() == null ? new ArrayList<>() : options.getInboundPermitteds());
+    this.outboundPermitted = new PermissionMatcher(options.getOutboundPermitteds() == null ? new ArrayList<>() : options.getOutboundPermitteds());
     this.maxAddressLength = options.getMaxAddressLength();
     this.maxHandlersPerSocket = options.getMaxHandlersPerSocket();
     this.pingTimeout = options.getPingTimeout();
@@ -84,19 +87,20 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
     this.bridgeEventHandler = bridgeEventHandler;
   }
 
-  private void handleSocketClosed(SockJSSocket sock, Map<String, MessageConsumer> registrations) {
+  private void handleSocketClosed(SockJSSocket sock, Set<String> registrations) {
     // On close unregister any handlers that haven't been unregistered
-    registrations.entrySet().forEach(entry -> {
-      entry.getValue().unregister();
+    registrations.forEach(address -> {
+      removeSubscriber(address, sock);
       checkCallHook(() -> new BridgeEventImpl(BridgeEventType.UNREGISTER,
-              new JsonObject().put("type", "unregister").put("address", entry.getValue().address()), sock), null, null);
+              new JsonObject().put("type", "unregister").put("address", address), sock), null, null);
     });
+    registrations.clear();
 
     SockInfo info = sockInfos.remove(sock);
     if (info != null) {
       PingInfo pingInfo = info.pingInfo;
       if (pingInfo != null) {
-        vertx.cancelTimer(pingInfo.timerID);
+        pingInfo.timer.cancel();
       }
     }
 
@@ -104,7 +108,7 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
       null, null);
   }
 
-  private void handleSocketData(SockJSSocket sock, Buffer data, Map<String, MessageConsumer> registrations) {
+  private void handleSocketData(SockJSSocket sock, Buffer data, Set<String> registrations) {
     JsonObject msg;
 
     try {
@@ -195,7 +199,7 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
   }
 
   private void internalHandleRegister(SockJSSocket sock, String address, JsonObject rawMsg,
-                                      Map<String, MessageConsumer> registrations) {
+                                      Set<String> registrations) {
     if (address.length() > maxAddressLength) {
       log.warn("Refusing to register as address length > max_address_length");
       replyError(sock, "max_address_length_reached");
@@ -210,21 +214,10 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
         final boolean debug = log.isDebugEnabled();
         boolean match = checkMatches(false, address, null);
         if (match) {
-          Handler<Message<Object>> handler = msg -> {
-            boolean curMatch = checkMatches(false, address, msg.body());
-            if (curMatch) {
-              checkAddAccceptedReplyAddress(msg);
-              deliverMessage(sock, address, msg);
-            } else {
-              // outbound match failed
-              if (debug) {
-                log.debug("Outbound message for address " + address + " rejected because there is no inbound match");
-              }
-            }
-          };
-          MessageConsumer reg = eb.consumer(address).handler(handler);
-          registrations.put(address, reg);
-          info.handlerCount++;
+          if (registrations.add(address)) {
+            addSubscriber(address, sock);
+            info.handlerCount++;
+          }
         } else {
           // inbound match failed
           if (debug) {
@@ -235,14 +228,13 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
       }, () -> replyError(sock, "rejected"));
   }
 
-  private void internalHandleUnregister(SockJSSocket sock, String address, JsonObject rawMsg, Map<String, MessageConsumer> registrations) {
+  private void internalHandleUnregister(SockJSSocket sock, String address, JsonObject rawMsg, Set<String> registrations) {
     checkCallHook(() -> new BridgeEventImpl(BridgeEventType.UNREGISTER, rawMsg, sock),
       () -> {
         boolean match = checkMatches(false, address, null);
         if (match) {
-          MessageConsumer reg = registrations.remove(address);
-          if (reg != null) {
-            reg.unregister();
+          if (registrations.remove(address)) {
+            removeSubscriber(address, sock);
             SockInfo info = sockInfos.get(sock);
             info.handlerCount--;
           }
@@ -265,14 +257,14 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
   public void handle(final SockJSSocket sock) {
     checkCallHook(() -> new BridgeEventImpl(BridgeEventType.SOCKET_CREATED, null, sock),
       () -> {
-        Map<String, MessageConsumer> registrations = new HashMap<>();
+        Set<String> registrations = new HashSet<>();
 
         sock.endHandler(v -> handleSocketClosed(sock, registrations));
         sock.handler(data -> handleSocketData(sock, data, registrations));
 
         // Start a checker to check for pings
         PingInfo pingInfo = new PingInfo();
-        pingInfo.timerID = vertx.setPeriodic(pingTimeout, id -> {
+        pingInfo.timer = TimerWheel.get(vertx).schedulePeriodic(pingTimeout, v -> {
           if (System.currentTimeMillis() - pingInfo.lastPing >= pingTimeout) {
             // We didn't receive a ping in time so close the socket
             sock.close();
@@ -284,6 +276,24 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
       }, sock::close);
   }
 
+  private void addSubscriber(String address, SockJSSocket sock) {
+    AddressFanout fanout = fanouts.get(address);
+    if (fanout == null) {
+      fanout = new AddressFanout(address);
+      fanouts.put(address, fanout);
+    }
+    fanout.sockets.add(sock);
+  }
+
+  private void removeSubscriber(String address, SockJSSocket sock) {
+    AddressFanout fanout = fanouts.get(address);
+    if (fanout != null && fanout.sockets.remove(sock) && fanout.sockets.isEmpty()) {
+      // last subscriber gone
+      fanout.consumer.unregister();
+      fanouts.remove(address);
+    }
+  }
+
   private void checkAddAccceptedReplyAddress(Message message) {
     String replyAddress = message.replyAddress();
     if (replyAddress != null) {
@@ -301,6 +311,13 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
   }
 
   private void deliverMessage(SockJSSocket sock, String address, Message message) {
+    JsonObject envelope = envelope(address, message);
+    checkCallHook(() -> new BridgeEventImpl(BridgeEventType.RECEIVE, envelope, sock),
+      () -> sock.write(buffer(envelope.encode())),
+      () -> log.debug("outbound message rejected by bridge event handler"));
+  }
+
+  private static JsonObject envelope(String address, Message<?> message) {
     JsonObject envelope = new JsonObject().put("type", "rec").put("address", address).put("body", message.body());
     if (message.replyAddress() != null) {
       envelope.put("replyAddress", message.replyAddress());
@@ -317,9 +334,7 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
       }
       envelope.put("headers", headersCopy);
     }
-    checkCallHook(() -> new BridgeEventImpl(BridgeEventType.RECEIVE, envelope, sock),
-      () -> sock.write(buffer(envelope.encode())),
-      () -> log.debug("outbound message rejected by bridge event handler"));
+    return envelope;
   }
 
   private void doSendOrPub(boolean send, SockJSSocket sock, String address,
@@ -415,80 +430,80 @@ public class EventBusBridgeImpl implements Handler<SockJSSocket> {
     }
   }
 
-  /*
-  Empty inboundPermitted means reject everything - this is the default.
-  If at least one match is supplied and all the fields of any match match then the message inboundPermitted,
-  this means that specifying one match with a JSON empty object means everything is accepted
-   */
   private boolean checkMatches(boolean inbound, String address, Object body) {
+    return (inbound ? inboundPermitted : outboundPermitted).matches(address, body);
+  }
 
-    List<PermittedOptions> matches = inbound ? inboundPermitted : outboundPermitted;
+  private static void replyError(SockJSSocket sock, String err) {
+    JsonObject envelope = new JsonObject().put("type", "err").put("body", err);
+    sock.write(buffer(envelope.encode()));
+  }
 
-    for (PermittedOptions matchHolder : matches) {
-      String matchAddress = matchHolder.getAddress();
-      String matchRegex;
-      if (matchAddress == null) {
-        matchRegex = matchHolder.getAddressRegex();
-      } else {
-        matchRegex = null;
-      }
+  /*
+  All the sockets registered to an address share a single event bus consumer, so a message is checked against the
+  outbound permissions once and, unless a bridge event handler has to see it per socket, a published message is encoded
+  once and the same buffer is written to every socket. A message sent point to point still goes to a single socket, the
+  subscribers take turns. As there is one consumer the sockets of this bridge together take one share of the sends to
+  the address, next to the other consumers of the address.
+   */
+  private final class AddressFanout implements Handler<Message<Object>> {
+    final String address;
+    final Set<SockJSSocket> sockets = new LinkedHashSet<>();
+    final MessageConsumer<Object> consumer;
+    // subscriber that gets the next point to point message
+    int next;
+
+    AddressFanout(String address) {
+      this.address = address;
+      this.consumer = eb.consumer(address, this);
+    }
 
-      boolean addressOK;
-      if (matchAddress == null) {
-        addressOK = matchRegex == null || regexMatches(matchRegex, address);
-      } else {
-        addressOK = matchAddress.equals(address);
+    @Override
+    public void handle(Message<Object> msg) {
+      if (!checkMatches(false, address, msg.body())) {
+        // outbound match failed
+        if (log.isDebugEnabled()) {
+          log.debug("Outbound message for address " + address + " rejected because there is no inbound match");
+        }
+        return;
       }
 
-      if (addressOK) {
-        return structureMatches(matchHolder.getMatch(), body);
-      }
-    }
-    return false;
-  }
+      checkAddAccceptedReplyAddress(msg);
 
-  private boolean regexMatches(String matchRegex, String address) {
-    Pattern pattern = compiledREs.get(matchRegex);
-    if (pattern == null) {
-      pattern = Pattern.compile(matchRegex);
-      compiledREs.put(matchRegex, pattern);
-    }
-    Matcher m = pattern.matcher(address);
-    return m.matches();
-  }
+      // a write may close a socket and unregister it
+      final SockJSSocket[] targets = sockets.toArray(new SockJSSocket[sockets.size()]);
 
-  private static void replyError(SockJSSocket sock, String err) {
-    JsonObject envelope = new JsonObject().put("type", "err").put("body", err);
-    sock.write(buffer(envelope.encode()));
-  }
+      if (targets.length == 0) {
+        return;
+      }
 
-  private static boolean structureMatches(JsonObject match, Object bodyObject) {
-    if (match == null || bodyObject == null) return true;
-
-    // Can send message other than JSON too - in which case we can't do deep matching on structure of message
-    if (bodyObject instanceof JsonObject) {
-      JsonObject body = (JsonObject) bodyObject;
-      for (String fieldName : match.fieldNames()) {
-        Object mv = match.getValue(fieldName);
-        Object bv = body.getValue(fieldName);
-        // Support deep matching
-        if (mv instanceof JsonObject) {
-          if (!structureMatches((JsonObject) mv, bv)) {
-            return false;
-          }
-        } else if (!match.getValue(fieldName).equals(body.getValue(fieldName))) {
-          return false;
+      if (msg instanceof MessageImpl && ((MessageImpl<?, ?>) msg).send()) {
+        // only one socket may reply
+        if (next >= targets.length) {
+          next = 0;
         }
+        deliverMessage(targets[next++], address, msg);
+        return;
       }
-      return true;
-    }
 
-    return false;
+      if (bridgeEventHandler != null) {
+        // the RECEIVE event is per socket and the handler may inspect or change the envelope
+        for (SockJSSocket sock : targets) {
+          deliverMessage(sock, address, msg);
+        }
+        return;
+      }
+
+      final Buffer encoded = buffer(envelope(address, msg).encode());
+      for (SockJSSocket sock : targets) {
+        sock.write(encoded);
+      }
+    }
   }
 
   private static final class PingInfo {
     long lastPing;
-    long timerID;
+    TimerWheel.Timeout timer;
   }
 
   private static final class SockInfo {
@@ -83,6 +83,11 @@ public class EventSourceTransport extends BaseTransport {
       addCloseHandler(rc.response(), session);
     }
 
+    @Override
+    public boolean isStreaming() {
+      return true;
+    }
+
     public void sendFrame(String body) {
       if (log.isTraceEnabled()) log.trace("EventSource, sending frame");
       if (!headersWritten) {
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.sockjs.impl;
+
+import com.jetdrone.vertx.yoke.core.impl.Histogram;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Frames flushed by the sessions of a SockJS handler and how many messages each of them carried, shows how much the
+ * coalescing window merges.
+ */
+public final class FlushMetrics {
+
+  private static final double[] PERCENTILES = {0.5, 0.99};
+
+  private final LongAdder messages = new LongAdder();
+  private final Histogram messagesPerFlush = new Histogram();
+
+  void record(int count) {
+    messages.add(count);
+    messagesPerFlush.record(count);
+  }
+
+  public long flushes() {
+    return messagesPerFlush.count();
+  }
+
+  public long messages() {
+    return messages.sum();
+  }
+
+  public JsonObject toJson() {
+    final long[] p = messagesPerFlush.percentiles(PERCENTILES);
+
+    return new JsonObject()
+        .put("flushes", flushes())
+        .put("messages", messages())
+        .put("messagesPerFlush", new JsonObject()
+            .put("mean", messagesPerFlush.mean())
+            .put("p50", p[0])
+            .put("p99", p[1])
+            .put("max", messagesPerFlush.max()));
+  }
+}
@@ -121,6 +121,11 @@ public class HtmlFileTransport extends BaseTransport {
       addCloseHandler(rc.response(), session);
     }
 
+    @Override
+    public boolean isStreaming() {
+      return true;
+    }
+
     public void sendFrame(String body) {
       if (log.isTraceEnabled()) log.trace("HtmlFile, sending frame");
       if (!headersWritten) {
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.sockjs.impl;
+
+import com.fasterxml.jackson.core.io.CharTypes;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The pending messages of a session, already encoded as a SockJS *a[...]* frame.
+ *
+ * Messages are escaped straight from their UTF-8 bytes into a growable byte array as they are written, with the same
+ * rules as JsonCodec (short escapes for the usual control characters, unicode escapes for the other control characters
+ * and everything outside US-ASCII). Malformed UTF-8 (including overlong forms, encoded surrogates and values beyond
+ * U+10FFFF) is replaced like the String decoding does. The frame is plain ASCII and flushing it is a single copy
+ * instead of encoding the whole queue again. The array is reused between flushes.
+ */
+final class MessageFrame {
+
+  private static final int INITIAL = 256;
+  // do not keep the array of a burst around
+  private static final int RETAIN = 64 * 1024;
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final int[] ESCAPE_CODES = CharTypes.get7BitOutputEscapes();
+
+  private byte[] bytes = new byte[INITIAL];
+  private int length;
+  private int messages;
+  // raw bytes of the queued messages
+  private int payload;
+
+  MessageFrame() {
+    reset();
+  }
+
+  private void reset() {
+    bytes[0] = 'a';
+    bytes[1] = '[';
+    length = 2;
+    messages = 0;
+    payload = 0;
+  }
+
+  boolean isEmpty() {
+    return messages == 0;
+  }
+
+  int messages() {
+    return messages;
+  }
+
+  /**
+   * Size in bytes of the queued messages (before escaping).
+   */
+  int payload() {
+    return payload;
+  }
+
+  void add(Buffer message) {
+    final byte[] src = message.getBytes();
+    // worst case every byte is unicode escaped
+    ensure(src.length * 6 + 3);
+
+    if (messages > 0) {
+      bytes[length++] = ',';
+    }
+    bytes[length++] = '"';
+
+    int i = 0;
+    while (i < src.length) {
+      final int b = src[i] & 0xff;
+
+      if (b < 0x80) {
+        final int code = ESCAPE_CODES[b];
+        if (code == 0) {
+          bytes[length++] = (byte) b;
+        } else if (code == -1) {
+          unicodeEscape(b);
+        } else {
+          bytes[length++] = '\\';
+          bytes[length++] = (byte) code;
+        }
+        i++;
+        continue;
+      }
+
+      // multi byte sequence, the second byte range also excludes overlong forms and values beyond unicode
+      final int extra;
+      int lo = 0x80;
+      int hi = 0xbf;
+      int cp;
+      if (b >= 0xc2 && b <= 0xdf) {
+        extra = 1;
+        cp = b & 0x1f;
+      } else if (b >= 0xe0 && b <= 0xef) {
+        extra = 2;
+        cp = b & 0x0f;
+        if (b == 0xe0) {
+          lo = 0xa0;
+        }
+      } else if (b >= 0xf0 && b <= 0xf4) {
+        extra = 3;
+        cp = b & 0x07;
+        if (b == 0xf0) {
+          lo = 0x90;
+        } else if (b == 0xf4) {
+          hi = 0x8f;
+        }
+      } else {
+        // continuation byte, overlong lead (c0, c1) or beyond unicode (f5-ff)
+        unicodeEscape(0xfffd);
+        i++;
+        continue;
+      }
+
+      int j = 1;
+      for (; j <= extra && i + j < src.length; j++) {
+        final int c = src[i + j] & 0xff;
+        if (c < lo || c > hi) {
+          break;
+        }
+        cp = (cp << 6) | (c & 0x3f);
+        lo = 0x80;
+        hi = 0xbf;
+      }
+
+      if (j <= extra || (cp >= 0xd800 && cp <= 0xdfff)) {
+        // malformed, truncated or an encoded surrogate, one replacement for the bytes read (as the String decoding did)
+        unicodeEscape(0xfffd);
+        i += j;
+        continue;
+      }
+
+      if (cp > 0xffff) {
+        // surrogate pair, as the UTF-16 chars were escaped
+        cp -= 0x10000;
+        unicodeEscape(0xd800 | (cp >> 10));
+        unicodeEscape(0xdc00 | (cp & 0x3ff));
+      } else {
+        unicodeEscape(cp);
+      }
+      i += j;
+    }
+
+    bytes[length++] = '"';
+    messages++;
+    payload += src.length;
+  }
+
+  /**
+   * Closes the frame, returns it and starts an empty one.
+   */
+  String take() {
+    ensure(1);
+    bytes[length++] = ']';
+    final String frame = new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+
+    if (bytes.length > RETAIN) {
+      bytes = new byte[INITIAL];
+    }
+    reset();
+    return frame;
+  }
+
+  private void unicodeEscape(int c) {
+    bytes[length++] = '\\';
+    bytes[length++] = 'u';
+    bytes[length++] = HEX[(c >> 12) & 0xf];
+    bytes[length++] = HEX[(c >> 8) & 0xf];
+    bytes[length++] = HEX[(c >> 4) & 0xf];
+    bytes[length++] = HEX[c & 0xf];
+  }
+
+  private void ensure(int extra) {
+    if (length + extra > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.sockjs.impl;
+
+import com.jetdrone.vertx.yoke.sockjs.PermittedOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A list of PermittedOptions compiled for lookups.
+ *
+ * The first rule (in list order) whose address matches decides, a rule without address and regex matches any address.
+ * Exact addresses are kept in a hash index and only the pattern rules listed before the exact hit need to be tried, the
+ * resulting rule for an address does not depend on the message so it is memoized in a bounded cache and the patterns
+ * are only run the first time an address is seen. The structure match (if the rule has one) is checked per message.
+ *
+ * The cache is an open addressing (linear probing) table from address to rule index, at most half full so probes stay
+ * short. Once it holds *cacheSize* addresses a new one evicts the next address found by a hand going round the table.
+ * It never allocates. Not thread safe, like the bridge that uses it.
+ */
+public final class PermissionMatcher {
+
+  private static final int NO_RULE = -1;
+
+  private final PermittedOptions[] rules;
+  // exact address -> index of the first rule with it
+  private final Map<String, Integer> exact = new HashMap<>();
+  // indexes and compiled patterns of the rules without exact address, in list order (null pattern matches all)
+  private final int[] patternIndexes;
+  private final Pattern[] patterns;
+
+  // address -> rule decided for it, linear probing from the hash of the address
+  private final String[] cachedAddresses;
+  private final int[] cachedRules;
+  private final int mask;
+  private final int shift;
+  private final int cacheSize;
+  private int cached;
+  // next slot to look for an address to evict
+  private int hand;
+
+  public PermissionMatcher(List<PermittedOptions> permitted, int cacheSize) {
+    rules = permitted.toArray(new PermittedOptions[permitted.size()]);
+
+    final List<Integer> indexes = new ArrayList<>();
+    final List<Pattern> compiled = new ArrayList<>();
+    final Map<String, Pattern> cache = new HashMap<>();
+
+    for (int i = 0; i < rules.length; i++) {
+      final String address = rules[i].getAddress();
+      if (address != null) {
+        if (!exact.containsKey(address)) {
+          exact.put(address, i);
+        }
+      } else {
+        final String regex = rules[i].getAddressRegex();
+        Pattern pattern = null;
+        if (regex != null) {
+          pattern = cache.get(regex);
+          if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            cache.put(regex, pattern);
+          }
+        }
+        indexes.add(i);
+        compiled.add(pattern);
+      }
+    }
+
+    patternIndexes = new int[indexes.size()];
+    for (int i = 0; i < patternIndexes.length; i++) {
+      patternIndexes[i] = indexes.get(i);
+    }
+    patterns = compiled.toArray(new Pattern[compiled.size()]);
+
+    // a power of two, at least twice the entries
+    final int slots = Integer.highestOneBit(Math.max(cacheSize, 1) * 4 - 1);
+    this.cacheSize = Math.max(cacheSize, 1);
+    cachedAddresses = new String[slots];
+    cachedRules = new int[slots];
+    mask = slots - 1;
+    shift = Integer.numberOfLeadingZeros(slots) + 1;
+  }
+
+  public PermissionMatcher(List<PermittedOptions> permitted) {
+    this(permitted, 1024);
+  }
+
+  /*
+  Empty permitted list means reject everything - this is the default.
+  If at least one match is supplied and all the fields of any match match then the message is permitted,
+  this means that specifying one match with a JSON empty object means everything is accepted
+   */
+  public boolean matches(String address, Object body) {
+    final int rule = rule(address);
+    return rule != NO_RULE && structureMatches(rules[rule].getMatch(), body);
+  }
+
+  private int rule(String address) {
+    int slot = home(address);
+    for (String key; (key = cachedAddresses[slot]) != null; slot = (slot + 1) & mask) {
+      if (key.equals(address)) {
+        return cachedRules[slot];
+      }
+    }
+
+    final Integer hit = exact.get(address);
+    final int limit = hit == null ? Integer.MAX_VALUE : hit;
+    int rule = hit == null ? NO_RULE : hit;
+
+    // a pattern listed before the exact rule takes precedence
+    for (int i = 0; i < patterns.length && patternIndexes[i] < limit; i++) {
+      if (patterns[i] == null || patterns[i].matcher(address).matches()) {
+        rule = patternIndexes[i];
+        break;
+      }
+    }
+
+    if (cached == cacheSize) {
+      evict();
+      // the eviction may have moved addresses around
+      slot = home(address);
+      while (cachedAddresses[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+    } else {
+      cached++;
+    }
+    cachedAddresses[slot] = address;
+    cachedRules[slot] = rule;
+    return rule;
+  }
+
+  private int home(String address) {
+    // fibonacci hashing, similar addresses have close hash codes that would cluster in the probe sequences
+    return (address.hashCode() * 0x9E3779B9) >>> shift;
+  }
+
+  private void evict() {
+    while (cachedAddresses[hand] == null) {
+      hand = (hand + 1) & mask;
+    }
+
+    // backward shift deletion: the addresses after the hole that may live in it move back, no tombstones needed
+    int hole = hand;
+    for (int i = (hole + 1) & mask; cachedAddresses[i] != null; i = (i + 1) & mask) {
+      // the address at i can move to the hole if the hole is not before its home (cyclically)
+      if (((i - home(cachedAddresses[i])) & mask) >= ((i - hole) & mask)) {
+        cachedAddresses[hole] = cachedAddresses[i];
+        cachedRules[hole] = cachedRules[i];
+        hole = i;
+      }
+    }
+    cachedAddresses[hole] = null;
+    hand = (hand + 1) & mask;
+  }
+
+  static boolean structureMatches(JsonObject match, Object bodyObject) {
+    if (match == null || bodyObject == null) return true;
+
+    // Can send message other than JSON too - in which case we can't do deep matching on structure of message
+    if (bodyObject instanceof JsonObject) {
+      JsonObject body = (JsonObject) bodyObject;
+      for (String fieldName : match.fieldNames()) {
+        Object mv = match.getValue(fieldName);
+        Object bv = body.getValue(fieldName);
+        // Support deep matching
+        if (mv instanceof JsonObject) {
+          if (!structureMatches((JsonObject) mv, bv)) {
+            return false;
+          }
+        } else if (!mv.equals(bv)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    return false;
+  }
+}
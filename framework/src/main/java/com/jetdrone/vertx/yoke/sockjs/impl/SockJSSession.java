@@ -63,7 +63,7 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
 
   private static final Logger log = LoggerFactory.getLogger(SockJSSession.class);
   private final LocalMap<String, SockJSSession> sessions;
-  private final Queue<String> pendingWrites = new LinkedList<>();
+  private final MessageFrame pendingWrites = new MessageFrame();
   private final Queue<String> pendingReads = new LinkedList<>();
   private TransportListener listener;
   private Handler<Buffer> dataHandler;
@@ -72,11 +72,16 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
   private final String id;
   private final long timeout;
   private final Handler<SockJSSocket> sockHandler;
-  private long heartbeatID = -1;
-  private long timeoutTimerID = -1;
+  private final TimerWheel timers;
+  private final TimerWheel.Timeout heartbeat;
+  private TimerWheel.Timeout timeoutTimer;
   private boolean paused;
-  private int maxQueueSize = 64 * 1024; // Message queue size is measured in *characters* (not bytes)
-  private int messagesSize;
+  private int maxQueueSize = 64 * 1024; // Message queue size is measured in bytes
+  // streaming transports hold messages up to coalesceDelay ms (or coalesceBytes) to send them as one frame
+  private long coalesceDelay;
+  private int coalesceBytes;
+  private long flushTimerID = -1;
+  private FlushMetrics flushMetrics;
   private Handler<Void> drainHandler;
   private Handler<Void> endHandler;
   private Handler<Throwable> exceptionHandler;
@@ -99,26 +104,51 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
     this.timeout = timeout;
     this.sockHandler = sockHandler;
 
-    // Start a heartbeat
-
-    heartbeatID = vertx.setPeriodic(heartbeatInterval, tid -> {
+    // Start a heartbeat, on the wheel shared by the sessions of this event loop
+    this.timers = TimerWheel.get(vertx);
+    heartbeat = timers.schedulePeriodic(heartbeatInterval, v -> {
       if (listener != null) {
         listener.sendFrame("h");
       }
     });
   }
 
+  void coalesce(long coalesceDelay, int coalesceBytes, FlushMetrics flushMetrics) {
+    this.coalesceDelay = coalesceDelay;
+    this.coalesceBytes = coalesceBytes;
+    this.flushMetrics = flushMetrics;
+  }
+
   @Override
   public synchronized SockJSSocket write(Buffer buffer) {
-    String msgStr = buffer.toString();
-    pendingWrites.add(msgStr);
-    this.messagesSize += msgStr.length();
+    pendingWrites.add(buffer);
     if (listener != null) {
-      writePendingMessages();
+      if (coalesceDelay > 0 && listener.isStreaming() && pendingWrites.payload() < coalesceBytes) {
+        // wait for more messages, the first one of the window starts the timer
+        if (flushTimerID == -1) {
+          flushTimerID = vertx.setTimer(coalesceDelay, tid -> flushCoalesced());
+        }
+      } else {
+        writePendingMessages();
+      }
     }
     return this;
   }
 
+  private synchronized void flushCoalesced() {
+    flushTimerID = -1;
+    if (listener != null && !pendingWrites.isEmpty()) {
+      writePendingMessages();
+    }
+  }
+
+  private void cancelFlush() {
+    if (flushTimerID != -1) {
+      vertx.cancelTimer(flushTimerID);
+      flushTimerID = -1;
+    }
+  }
+
   @Override
   public synchronized SockJSSession handler(Handler<Buffer> handler) {
     this.dataHandler = handler;
@@ -153,7 +183,7 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
 
   @Override
   public synchronized boolean writeQueueFull() {
-    return messagesSize >= maxQueueSize;
+    return pendingWrites.payload() >= maxQueueSize;
   }
 
   @Override
@@ -187,6 +217,10 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
       endHandler.handle(null);
     }
     closed = true;
+    // messages held for coalescing go out before the close frame
+    if (listener != null && !pendingWrites.isEmpty()) {
+      writePendingMessages();
+    }
     if (listener != null && handleCalled) {
       listener.sessionClosed();
     }
@@ -224,16 +258,17 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
   }
 
   private void cancelTimer() {
-    if (timeoutTimerID != -1) {
-      vertx.cancelTimer(timeoutTimerID);
+    if (timeoutTimer != null) {
+      timeoutTimer.cancel();
+      timeoutTimer = null;
     }
   }
 
   private void setTimer() {
     if (timeout != -1) {
       cancelTimer();
-      timeoutTimerID = vertx.setTimer(timeout, id1 -> {
-        vertx.cancelTimer(heartbeatID);
+      timeoutTimer = timers.schedule(timeout, v -> {
+        heartbeat.cancel();
         if (listener == null) {
           shutdown();
         }
@@ -245,11 +280,12 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
   }
 
   synchronized void writePendingMessages() {
-    String json = JsonCodec.encode(pendingWrites.toArray());
-    listener.sendFrame("a" + json);
-    pendingWrites.clear();
-    messagesSize = 0;
-    if (drainHandler != null && messagesSize <= maxQueueSize / 2) {
+    cancelFlush();
+    if (flushMetrics != null) {
+      flushMetrics.record(pendingWrites.messages());
+    }
+    listener.sendFrame(pendingWrites.take());
+    if (drainHandler != null) {
       Handler<Void> dh = drainHandler;
       drainHandler = null;
       dh.handle(null);
@@ -297,12 +333,9 @@ public class SockJSSession extends SockJSSocketBase implements Shareable {
   // Yes, I know it's weird but that's the way SockJS likes it.
   private void doClose() {
     super.close(); // We must call this or handlers don't get unregistered and we get a leak
-    if (heartbeatID != -1) {
-      vertx.cancelTimer(heartbeatID);
-    }
-    if (timeoutTimerID != -1) {
-      vertx.cancelTimer(timeoutTimerID);
-    }
+    heartbeat.cancel();
+    cancelTimer();
+    cancelFlush();
     if (id != null) {
       // Can be null if websocket session
       sessions.remove(id);
@@ -0,0 +1,250 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.sockjs.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timer wheel shared by all the SockJS sessions and bridge sockets of an event loop.
+ *
+ * Heartbeats, session timeouts and ping checks are coarse (seconds) and there is one or two per connection, so instead
+ * of a Vert.x timer each they are linked into the slot of the tick they are due in. Scheduling and cancelling is O(1),
+ * and a single periodic Vert.x timer per event loop advances the wheel and runs the due tasks in a batch. The periodic
+ * timer only runs while there is something scheduled.
+ *
+ * The tasks run on the event loop that owns the wheel. Sessions can be used from other event loops, so the wheel is
+ * synchronized, the tasks themselves run outside the lock.
+ */
+public final class TimerWheel {
+
+  private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+  private static final String KEY = "yoke.sockjs.timerWheel";
+
+  private static final long TICK = 100;
+  private static final int SLOTS = 512;
+
+  /**
+   * A scheduled task.
+   */
+  public static final class Timeout {
+    private final TimerWheel wheel;
+    private final Handler<Void> task;
+    private final long period;
+
+    private long deadline;
+    private Timeout prev;
+    private Timeout next;
+    private boolean cancelled;
+
+    private Timeout(TimerWheel wheel, Handler<Void> task, long period) {
+      this.wheel = wheel;
+      this.task = task;
+      this.period = period;
+    }
+
+    /**
+     * @return false if it already ran (one shot) or was cancelled
+     */
+    public boolean cancel() {
+      return wheel.cancel(this);
+    }
+  }
+
+  /**
+   * The wheel of the current event loop.
+   */
+  public static TimerWheel get(Vertx vertx) {
+    final Context context = vertx.getOrCreateContext();
+    TimerWheel wheel = context.get(KEY);
+    if (wheel == null) {
+      wheel = new TimerWheel(vertx, context);
+      context.put(KEY, wheel);
+    }
+    return wheel;
+  }
+
+  private final Vertx vertx;
+  private final Context context;
+
+  // sentinel per slot, circular lists
+  private final Timeout[] slots = new Timeout[SLOTS];
+  // last tick processed
+  private long tick;
+  private int size;
+  private long timerID = -1;
+  private boolean starting;
+
+  private TimerWheel(Vertx vertx, Context context) {
+    this.vertx = vertx;
+    this.context = context;
+
+    for (int i = 0; i < SLOTS; i++) {
+      final Timeout sentinel = new Timeout(this, null, 0);
+      sentinel.prev = sentinel;
+      sentinel.next = sentinel;
+      slots[i] = sentinel;
+    }
+  }
+
+  /**
+   * Runs the task once after (about) delay milliseconds.
+   */
+  public Timeout schedule(long delay, Handler<Void> task) {
+    final Timeout timeout = new Timeout(this, task, 0);
+    link(timeout, delay);
+    return timeout;
+  }
+
+  /**
+   * Runs the task every (about) period milliseconds until cancelled.
+   */
+  public Timeout schedulePeriodic(long period, Handler<Void> task) {
+    final Timeout timeout = new Timeout(this, task, period);
+    link(timeout, period);
+    return timeout;
+  }
+
+  /**
+   * Number of scheduled tasks.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @return true while the Vert.x timer driving the wheel is active
+   */
+  public synchronized boolean isRunning() {
+    return timerID != -1 || starting;
+  }
+
+  private void link(Timeout timeout, long delay) {
+    final boolean start;
+
+    synchronized (this) {
+      if (timeout.cancelled) {
+        return;
+      }
+
+      if (timerID == -1 && !starting) {
+        // idle wheel, restart from now
+        tick = System.currentTimeMillis() / TICK;
+      }
+
+      // at least the next tick, rounded up
+      timeout.deadline = Math.max(System.currentTimeMillis() / TICK, tick) + Math.max(1, (delay + TICK - 1) / TICK);
+
+      final Timeout sentinel = slots[(int) (timeout.deadline % SLOTS)];
+      timeout.prev = sentinel.prev;
+      timeout.next = sentinel;
+      sentinel.prev.next = timeout;
+      sentinel.prev = timeout;
+      size++;
+
+      start = timerID == -1 && !starting;
+      if (start) {
+        starting = true;
+      }
+    }
+
+    if (start) {
+      if (Vertx.currentContext() == context) {
+        startTimer();
+      } else {
+        // the timer must fire on the owner event loop
+        context.runOnContext(v -> startTimer());
+      }
+    }
+  }
+
+  private void startTimer() {
+    final long id = vertx.setPeriodic(TICK, t -> advance());
+    synchronized (this) {
+      timerID = id;
+      starting = false;
+    }
+  }
+
+  private synchronized boolean cancel(Timeout timeout) {
+    if (timeout.cancelled) {
+      return false;
+    }
+    timeout.cancelled = true;
+    return unlink(timeout);
+  }
+
+  private boolean unlink(Timeout timeout) {
+    if (timeout.next == null) {
+      return false;
+    }
+    timeout.prev.next = timeout.next;
+    timeout.next.prev = timeout.prev;
+    timeout.prev = null;
+    timeout.next = null;
+    size--;
+    return true;
+  }
+
+  private void advance() {
+    final List<Timeout> due = new ArrayList<>();
+
+    synchronized (this) {
+      final long now = System.currentTimeMillis() / TICK;
+      // catch up if the event loop was busy, at most one lap
+      if (now - tick > SLOTS) {
+        tick = now - SLOTS;
+      }
+
+      while (tick < now) {
+        tick++;
+        final Timeout sentinel = slots[(int) (tick % SLOTS)];
+        for (Timeout t = sentinel.next; t != sentinel; ) {
+          final Timeout next = t.next;
+          // later laps stay in the slot
+          if (t.deadline <= tick) {
+            unlink(t);
+            due.add(t);
+          }
+          t = next;
+        }
+      }
+    }
+
+    for (Timeout t : due) {
+      synchronized (this) {
+        // cancelled while collected
+        if (t.cancelled) {
+          continue;
+        }
+        if (t.period == 0) {
+          // one shot, it cannot be cancelled anymore
+          t.cancelled = true;
+        }
+      }
+      try {
+        t.task.handle(null);
+      } catch (RuntimeException e) {
+        log.error("Unhandled exception in timer", e);
+      }
+      if (t.period > 0) {
+        link(t, t.period);
+      }
+    }
+
+    synchronized (this) {
+      if (size == 0 && timerID != -1) {
+        vertx.cancelTimer(timerID);
+        timerID = -1;
+      }
+    }
+  }
+}
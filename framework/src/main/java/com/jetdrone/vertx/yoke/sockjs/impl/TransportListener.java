@@ -39,6 +39,13 @@ interface TransportListener {
 
   void sendFrame(String body);
 
+  /**
+   * Streaming transports keep the response open, so they can wait a little and send several messages as one frame.
+   */
+  default boolean isStreaming() {
+    return false;
+  }
+
   void close();
 
   void sessionClosed();
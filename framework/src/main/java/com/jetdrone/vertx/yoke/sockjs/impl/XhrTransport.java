@@ -198,6 +198,11 @@ public class XhrTransport extends BaseTransport {
       addCloseHandler(rc.response(), session);
     }
 
+    @Override
+    public boolean isStreaming() {
+      return true;
+    }
+
     public void sendFrame(String body) {
       boolean hr = headersWritten;
       super.sendFrame(body);
@@ -0,0 +1,523 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.store;
+
+import com.jetdrone.vertx.yoke.core.impl.LRUCache;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * # ClusterSessionStore
+ *
+ * Session store backed by a cluster wide map, so any node can serve any session (Vert.x must be started clustered).
+ *
+ * Sessions are stored as *version:json* strings where the version is a random stamp generated on every write. Each node
+ * keeps a bounded near cache of the parsed sessions it has seen, when a session is read again the stored version is
+ * compared with the cached one and the JSON is only parsed if another node changed it.
+ *
+ * Writes are behind: *set* updates the local view and the actual write happens at the end of the current event loop
+ * tick, so several *set* calls for the same session while handling a request become a single write. The callbacks are
+ * called once that write completes. There is at most one write per session in flight, a *destroy* goes through the
+ * same queue so it is never overtaken by an earlier write, and *clear* waits for the writes in flight.
+ *
+ * Sessions expire *maxAge* milliseconds after they were last written or touched, using the map TTL. The map cannot
+ * extend a TTL without writing the value again, so a *touch* is skipped while less than half of the TTL has passed
+ * since this node last wrote or refreshed the session. Otherwise the stored value is read and put back unchanged (same
+ * version) only if its version is still the one in the near cache, a session changed by another node already got a
+ * new TTL from that write. The refresh goes through the same queue as the writes of this node.
+ *
+ * A cluster wide map cannot be enumerated, so *all* only returns the sessions cached on this node.
+ *
+ * <pre>
+ * Vertx.clusteredVertx(new VertxOptions(), res -&gt; {
+ *   Vertx vertx = res.result();
+ *   new Yoke(vertx)
+ *     .store(new ClusterSessionStore(vertx, "sessions"))
+ *     ...
+ * });
+ * </pre>
+ */
+public class ClusterSessionStore implements SessionStore {
+
+    // a session waiting to be written, or removed when sess is null
+    private static final class Pending {
+        private JsonObject sess;
+        private long maxAge;
+        private final List<Handler<Object>> callbacks = new ArrayList<>(1);
+        // run after the write completes (e.g.: a clear waiting for it)
+        private List<Handler<Void>> after;
+    }
+
+    // a parsed session and the version it was parsed from
+    private static final class VersionedEntry extends LRUCache.CacheEntry<JsonObject, Void> {
+        private final String version;
+        // when this node last wrote or refreshed it, 0 if it was read
+        private volatile long written;
+
+        private VersionedEntry(String version, JsonObject sess) {
+            super(0, sess);
+            this.version = version;
+        }
+    }
+
+    private final Vertx vertx;
+    private final LRUCache<JsonObject, Void> nearCache;
+    private final long maxAge;
+
+    // guarded by pending: sessions waiting for the next flush and the ones being written (or refreshed), kept so reads
+    // still see them
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private final Map<String, Pending> writing = new HashMap<>();
+    private boolean flushScheduled;
+    // clear calls in progress
+    private int clearing;
+
+    private AsyncMap<String, String> storage;
+    private Throwable failure;
+    private List<Handler<Void>> waiting = new ArrayList<>();
+
+    public ClusterSessionStore(Vertx vertx, String name) {
+        this(vertx, name, 1024, 60 * 60 * 1000);
+    }
+
+    /**
+     * @param nearCacheSize maximum number of parsed sessions kept on this node
+     * @param maxAge        default milliseconds a session lives without being used, 0 to keep sessions forever
+     */
+    public ClusterSessionStore(Vertx vertx, String name, int nearCacheSize, long maxAge) {
+        this.vertx = vertx;
+        this.nearCache = new LRUCache<>(nearCacheSize);
+        this.maxAge = maxAge;
+
+        vertx.sharedData().<String, String>getClusterWideMap(name, new Handler<AsyncResult<AsyncMap<String, String>>>() {
+            @Override
+            public void handle(AsyncResult<AsyncMap<String, String>> res) {
+                final List<Handler<Void>> ready;
+
+                synchronized (ClusterSessionStore.this) {
+                    if (res.failed()) {
+                        failure = res.cause();
+                    } else {
+                        storage = res.result();
+                    }
+                    ready = waiting;
+                    waiting = null;
+                }
+
+                for (Handler<Void> h : ready) {
+                    h.handle(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the operation once the cluster map is available (or failed to be).
+     */
+    private void whenReady(Handler<Void> operation) {
+        synchronized (this) {
+            if (waiting != null) {
+                waiting.add(operation);
+                return;
+            }
+        }
+        operation.handle(null);
+    }
+
+    @Override
+    public void get(final String sid, final Handler<JsonObject> callback) {
+        // read your own writes
+        synchronized (pending) {
+            Pending p = pending.get(sid);
+            if (p == null) {
+                p = writing.get(sid);
+            }
+            if (p != null) {
+                callback.handle(p.sess == null ? null : p.sess.copy());
+                return;
+            }
+        }
+
+        whenReady(new Handler<Void>() {
+            @Override
+            public void handle(Void ready) {
+                if (storage == null) {
+                    callback.handle(null);
+                    return;
+                }
+
+                storage.get(sid, new Handler<AsyncResult<String>>() {
+                    @Override
+                    public void handle(AsyncResult<String> res) {
+                        if (res.failed() || res.result() == null) {
+                            nearCache.remove(sid);
+                            callback.handle(null);
+                            return;
+                        }
+
+                        final String value = res.result();
+                        final int sep = value.indexOf(':');
+                        final VersionedEntry cached = (VersionedEntry) nearCache.get(sid);
+
+                        // unchanged since it was cached, skip the parsing
+                        if (cached != null && cached.version.length() == sep && value.startsWith(cached.version)) {
+                            callback.handle(cached.raw.copy());
+                            return;
+                        }
+
+                        final JsonObject sess = new JsonObject(value.substring(sep + 1));
+                        nearCache.put(sid, new VersionedEntry(value.substring(0, sep), sess));
+                        callback.handle(sess.copy());
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void set(final String sid, final JsonObject sess, final Handler<Object> callback) {
+        set(sid, sess, 0, callback);
+    }
+
+    @Override
+    public void set(final String sid, final JsonObject sess, final long maxAge, final Handler<Object> callback) {
+        enqueue(sid, sess, maxAge > 0 ? maxAge : this.maxAge, callback);
+    }
+
+    private void enqueue(final String sid, final JsonObject sess, final long maxAge, final Handler<Object> callback) {
+        synchronized (pending) {
+            Pending p = pending.get(sid);
+            if (p == null) {
+                p = new Pending();
+                pending.put(sid, p);
+            }
+            // the last one wins, it is encoded when written so later changes in this tick are included
+            p.sess = sess;
+            p.maxAge = maxAge;
+            p.callbacks.add(callback);
+
+            if (!scheduleFlush()) {
+                return;
+            }
+        }
+
+        vertx.runOnContext(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                flush();
+            }
+        });
+    }
+
+    // call holding the lock, true when the caller must run flush
+    private boolean scheduleFlush() {
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    private void flush() {
+        final List<Map.Entry<String, Pending>> batch = new ArrayList<>();
+
+        synchronized (pending) {
+            flushScheduled = false;
+            if (clearing > 0) {
+                // flushed again once the clear completes
+                return;
+            }
+            final Iterator<Map.Entry<String, Pending>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, Pending> e = it.next();
+                // one write per session at a time, the next one is flushed when it completes
+                if (!writing.containsKey(e.getKey())) {
+                    it.remove();
+                    writing.put(e.getKey(), e.getValue());
+                    batch.add(e);
+                }
+            }
+        }
+
+        whenReady(new Handler<Void>() {
+            @Override
+            public void handle(Void ready) {
+                for (Map.Entry<String, Pending> e : batch) {
+                    write(e.getKey(), e.getValue());
+                }
+            }
+        });
+    }
+
+    private void write(final String sid, final Pending p) {
+        if (storage == null) {
+            done(sid, p, failure);
+            return;
+        }
+
+        if (p.sess == null) {
+            nearCache.remove(sid);
+            storage.remove(sid, new Handler<AsyncResult<String>>() {
+                @Override
+                public void handle(AsyncResult<String> res) {
+                    done(sid, p, res.failed() ? res.cause() : null);
+                }
+            });
+            return;
+        }
+
+        final String version = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        final String value = version + ":" + p.sess.encode();
+
+        final VersionedEntry entry = new VersionedEntry(version, p.sess.copy());
+        entry.written = System.currentTimeMillis();
+        nearCache.put(sid, entry);
+
+        put(sid, value, p.maxAge, new Handler<AsyncResult<Void>>() {
+            @Override
+            public void handle(AsyncResult<Void> res) {
+                if (res.failed()) {
+                    nearCache.remove(sid);
+                    done(sid, p, res.cause());
+                } else {
+                    done(sid, p, null);
+                }
+            }
+        });
+    }
+
+    private void put(String sid, String value, long ttl, Handler<AsyncResult<Void>> handler) {
+        if (ttl > 0) {
+            storage.put(sid, value, ttl, handler);
+        } else {
+            storage.put(sid, value, handler);
+        }
+    }
+
+    @Override
+    public void touch(final String sid, final JsonObject sess, final long maxAge, final Handler<Object> callback) {
+        final long ttl = maxAge > 0 ? maxAge : this.maxAge;
+        final VersionedEntry cached = (VersionedEntry) nearCache.peek(sid);
+
+        if (cached == null) {
+            // no version to compare with
+            set(sid, sess, maxAge, callback);
+            return;
+        }
+
+        // no expiration or recently written
+        if (ttl <= 0 || System.currentTimeMillis() - cached.written < ttl / 2) {
+            callback.handle(null);
+            return;
+        }
+
+        final Pending p = new Pending();
+        p.sess = sess;
+        p.callbacks.add(callback);
+
+        final boolean queued;
+
+        synchronized (pending) {
+            // about to be written (so refreshed) anyway
+            queued = pending.containsKey(sid) || writing.containsKey(sid);
+            if (!queued) {
+                // ordered with the writes and clears of this node like a write
+                writing.put(sid, p);
+            }
+        }
+
+        if (queued) {
+            callback.handle(null);
+            return;
+        }
+
+        whenReady(new Handler<Void>() {
+            @Override
+            public void handle(Void ready) {
+                if (storage == null) {
+                    done(sid, p, failure);
+                    return;
+                }
+
+                storage.get(sid, new Handler<AsyncResult<String>>() {
+                    @Override
+                    public void handle(AsyncResult<String> res) {
+                        if (res.failed()) {
+                            done(sid, p, res.cause());
+                            return;
+                        }
+
+                        final String value = res.result();
+                        // expired, destroyed or changed by another node meanwhile
+                        if (value == null || value.indexOf(':') != cached.version.length()
+                                || !value.startsWith(cached.version)) {
+                            done(sid, p, null);
+                            return;
+                        }
+
+                        final long now = System.currentTimeMillis();
+                        // same value, same version, the near caches stay valid
+                        put(sid, value, ttl, new Handler<AsyncResult<Void>>() {
+                            @Override
+                            public void handle(AsyncResult<Void> res) {
+                                if (res.succeeded()) {
+                                    cached.written = now;
+                                }
+                                done(sid, p, res.failed() ? res.cause() : null);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private void done(String sid, Pending p, Object error) {
+        final boolean flush;
+
+        synchronized (pending) {
+            writing.remove(sid);
+            // a newer version was set while this one was being written
+            flush = pending.containsKey(sid) && scheduleFlush();
+        }
+
+        for (Handler<Object> callback : p.callbacks) {
+            callback.handle(error);
+        }
+
+        if (p.after != null) {
+            for (Handler<Void> handler : p.after) {
+                handler.handle(null);
+            }
+        }
+
+        if (flush) {
+            flush();
+        }
+    }
+
+    @Override
+    public void destroy(final String sid, final Handler<Object> callback) {
+        nearCache.remove(sid);
+        // queued like a write, so it replaces a queued write and is ordered after the one in flight
+        enqueue(sid, null, 0, callback);
+    }
+
+    @Override
+    public void all(final Handler<JsonArray> callback) {
+        final JsonArray items = new JsonArray();
+        for (String sid : nearCache.keys()) {
+            final LRUCache.CacheEntry<JsonObject, Void> entry = nearCache.peek(sid);
+            if (entry != null) {
+                items.add(entry.raw.copy());
+            }
+        }
+        callback.handle(items);
+    }
+
+    @Override
+    public void clear(final Handler<Object> callback) {
+        final List<Pending> dropped;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final Handler<Void> clear = new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                if (inFlight.decrementAndGet() > 0) {
+                    return;
+                }
+
+                whenReady(new Handler<Void>() {
+                    @Override
+                    public void handle(Void ready) {
+                        if (storage == null) {
+                            cleared(callback, failure);
+                            return;
+                        }
+
+                        storage.clear(new Handler<AsyncResult<Void>>() {
+                            @Override
+                            public void handle(AsyncResult<Void> res) {
+                                cleared(callback, res.failed() ? res.cause() : null);
+                            }
+                        });
+                    }
+                });
+            }
+        };
+
+        synchronized (pending) {
+            // the queued writes are superseded by the clear, writes in flight must land before it
+            dropped = new ArrayList<>(pending.values());
+            pending.clear();
+            clearing++;
+            // one extra count released below, so the clear does not start while registering
+            inFlight.set(writing.size() + 1);
+            for (Pending p : writing.values()) {
+                if (p.after == null) {
+                    p.after = new ArrayList<>(1);
+                }
+                p.after.add(clear);
+            }
+        }
+        nearCache.clear();
+
+        for (Pending p : dropped) {
+            for (Handler<Object> cb : p.callbacks) {
+                cb.handle(null);
+            }
+        }
+
+        clear.handle(null);
+    }
+
+    private void cleared(Handler<Object> callback, Object error) {
+        final boolean flush;
+
+        synchronized (pending) {
+            clearing--;
+            // set while clearing
+            flush = clearing == 0 && !pending.isEmpty() && scheduleFlush();
+        }
+
+        callback.handle(error);
+
+        if (flush) {
+            flush();
+        }
+    }
+
+    @Override
+    public void length(final Handler<Integer> callback) {
+        whenReady(new Handler<Void>() {
+            @Override
+            public void handle(Void ready) {
+                if (storage == null) {
+                    callback.handle(0);
+                    return;
+                }
+
+                storage.size(new Handler<AsyncResult<Integer>>() {
+                    @Override
+                    public void handle(AsyncResult<Integer> res) {
+                        callback.handle(res.failed() ? 0 : res.result());
+                    }
+                });
+            }
+        });
+    }
+}
@@ -16,6 +16,19 @@ public interface SessionStore {
     // Commit the given `sess` object associated with the given `sid`.
     void set(String sid, JsonObject sess, Handler<Object> callback);
 
+    // Commit the given `sess` object associated with the given `sid`, expiring `maxAge` milliseconds after it is last
+    // set or touched (0 for the store default).
+    default void set(String sid, JsonObject sess, long maxAge, Handler<Object> callback) {
+        set(sid, sess, callback);
+    }
+
+    // Extend the expiration of the unchanged session `sess` associated with the given `sid` to `maxAge` milliseconds
+    // from now (0 for the store default). Stores that can do it without writing the session override it, by default
+    // the session is written again.
+    default void touch(String sid, JsonObject sess, long maxAge, Handler<Object> callback) {
+        set(sid, sess, maxAge, callback);
+    }
+
     // Destroy the session associated with the given `sid`.
     void destroy(String sid, Handler<Object> callback);
 
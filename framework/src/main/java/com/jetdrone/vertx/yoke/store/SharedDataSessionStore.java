@@ -3,21 +3,77 @@
  */
 package com.jetdrone.vertx.yoke.store;
 
+import com.jetdrone.vertx.yoke.core.impl.ExpiringKeys;
+import com.jetdrone.vertx.yoke.jmx.SessionStoreMBean;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.LocalMap;
 
-import java.util.concurrent.ConcurrentMap;
+import javax.management.*;
+import java.lang.management.ManagementFactory;
 
-/** #SharedDataSessionStore */
+/** #SharedDataSessionStore
+ *
+ * Keeps the sessions in a local shared map, so all the verticles of a Vert.x instance see the same sessions.
+ *
+ * Sessions expire *maxAge* milliseconds after they were last set or touched. Expired sessions are removed by a
+ * periodic reaper that only visits the sessions that expired since it last ran, the number of live sessions does not
+ * matter. Size and expirations are exposed on JMX as *com.jetdrone.yoke:type=SessionStore,name=&lt;name&gt;*.
+ */
 public class SharedDataSessionStore implements SessionStore {
 
+    // how often expired sessions are removed (and how late they can be)
+    private static final long REAP_INTERVAL = 1000;
+
     private final LocalMap<String, String> storage;
+    private final ExpiringKeys expiry;
+    private final long maxAge;
 
     public SharedDataSessionStore(Vertx vertx, String name) {
+        this(vertx, name, 60 * 60 * 1000);
+    }
+
+    /**
+     * @param maxAge default milliseconds a session lives without being used, 0 to keep sessions forever
+     */
+    public SharedDataSessionStore(Vertx vertx, String name, long maxAge) {
+        this.maxAge = maxAge;
+
         storage = vertx.sharedData().getLocalMap(name);
+
+        // the deadlines are shared by all the stores using the same map
+        final LocalMap<String, ExpiringKeys> meta = vertx.sharedData().getLocalMap(name + ".expiry");
+        final ExpiringKeys created = new ExpiringKeys(REAP_INTERVAL);
+        final ExpiringKeys existing = meta.putIfAbsent("keys", created);
+        expiry = existing == null ? created : existing;
+
+        vertx.setPeriodic(REAP_INTERVAL, new Handler<Long>() {
+            @Override
+            public void handle(Long timerId) {
+                expiry.reap(System.currentTimeMillis(), new Handler<String>() {
+                    @Override
+                    public void handle(String sid) {
+                        storage.remove(sid);
+                    }
+                });
+            }
+        });
+
+        // register on JMX
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new SessionStoreMBean(storage, expiry), new ObjectName("com.jetdrone.yoke:type=SessionStore,name=" + ObjectName.quote(name)));
+        } catch (InstanceAlreadyExistsException e) {
+            // ignore
+        } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long deadline(long maxAge) {
+        final long age = maxAge > 0 ? maxAge : this.maxAge;
+        return age > 0 ? System.currentTimeMillis() + age : 0;
     }
 
     @Override
@@ -29,26 +85,56 @@ public class SharedDataSessionStore implements SessionStore {
             return;
         }
 
+        // not reaped yet
+        if (expiry.isExpired(sid, System.currentTimeMillis())) {
+            destroy(sid, null);
+            callback.handle(null);
+            return;
+        }
+
         callback.handle(new JsonObject(sess));
     }
 
     @Override
     public void set(String sid, JsonObject sess, Handler<Object> callback) {
+        set(sid, sess, 0, callback);
+    }
+
+    @Override
+    public void set(String sid, JsonObject sess, long maxAge, Handler<Object> callback) {
+        expiry.expireAt(sid, deadline(maxAge));
         storage.put(sid, sess.encode());
         callback.handle(null);
     }
 
+    @Override
+    public void touch(String sid, JsonObject sess, long maxAge, Handler<Object> callback) {
+        if (storage.get(sid) != null) {
+            expiry.expireAt(sid, deadline(maxAge));
+        }
+        callback.handle(null);
+    }
+
     @Override
     public void destroy(String sid, Handler<Object> callback) {
         storage.remove(sid);
-        callback.handle(null);
+        expiry.remove(sid);
+        if (callback != null) {
+            callback.handle(null);
+        }
     }
 
     @Override
     public void all(Handler<JsonArray> callback) {
+        final long now = System.currentTimeMillis();
         JsonArray items = new JsonArray();
-        for (String s : storage.values()) {
-            items.add(new JsonObject(s));
+        for (String sid : storage.keySet()) {
+            if (!expiry.isExpired(sid, now)) {
+                String s = storage.get(sid);
+                if (s != null) {
+                    items.add(new JsonObject(s));
+                }
+            }
         }
         callback.handle(items);
     }
@@ -56,6 +142,7 @@ public class SharedDataSessionStore implements SessionStore {
     @Override
     public void clear(Handler<Object> callback) {
         storage.clear();
+        expiry.clear();
         callback.handle(null);
     }
 
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StaticRangeTest {
+
+    private static final long SIZE = 100;
+
+    @Test
+    public void testFirstBytes() {
+        assertArrayEquals(new long[]{0, 9}, Static.parseRanges("bytes=0-9", SIZE));
+    }
+
+    @Test
+    public void testSuffix() {
+        assertArrayEquals(new long[]{95, 99}, Static.parseRanges("bytes=-5", SIZE));
+        // longer than the file
+        assertArrayEquals(new long[]{0, 99}, Static.parseRanges("bytes=-500", SIZE));
+    }
+
+    @Test
+    public void testOpenEnded() {
+        assertArrayEquals(new long[]{5, 99}, Static.parseRanges("bytes=5-", SIZE));
+        // the last byte is clamped to the file size
+        assertArrayEquals(new long[]{5, 99}, Static.parseRanges("bytes=5-500", SIZE));
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        assertArrayEquals(new long[]{0, 9, 50, 59}, Static.parseRanges("bytes=0-9, 50-59", SIZE));
+        // sorted
+        assertArrayEquals(new long[]{0, 9, 50, 59}, Static.parseRanges("bytes=50-59,0-9", SIZE));
+    }
+
+    @Test
+    public void testOverlappingRanges() {
+        assertArrayEquals(new long[]{0, 59}, Static.parseRanges("bytes=0-49,40-59", SIZE));
+        assertArrayEquals(new long[]{0, 19}, Static.parseRanges("bytes=0-9,10-19", SIZE));
+        assertArrayEquals(new long[]{0, 99}, Static.parseRanges("bytes=0-99,0-99,0-99", SIZE));
+        assertArrayEquals(new long[]{90, 99}, Static.parseRanges("bytes=-10,95-", SIZE));
+    }
+
+    @Test
+    public void testTooManyRanges() {
+        final StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 16; i++) {
+            header.append(',').append(2 * i).append('-').append(2 * i);
+        }
+
+        assertEquals(32, Static.parseRanges(header.toString(), SIZE).length);
+
+        header.append(",32-32");
+        assertNull(Static.parseRanges(header.toString(), SIZE));
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        final long[] ranges = Static.parseRanges("bytes=100-", SIZE);
+
+        assertEquals(0, ranges.length);
+        assertEquals("bytes */100", Static.contentRange(ranges, 0, SIZE));
+
+        assertEquals(0, Static.parseRanges("bytes=200-300,-0", SIZE).length);
+        // the satisfiable ranges are still sent
+        assertArrayEquals(new long[]{0, 4}, Static.parseRanges("bytes=100-,0-4", SIZE));
+    }
+
+    @Test
+    public void testContentRange() {
+        final long[] ranges = Static.parseRanges("bytes=0-9,50-", SIZE);
+
+        assertEquals("bytes 0-9/100", Static.contentRange(ranges, 0, SIZE));
+        assertEquals("bytes 50-99/100", Static.contentRange(ranges, 1, SIZE));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertNull(Static.parseRanges("bytes=", SIZE));
+        assertNull(Static.parseRanges("bytes=abc", SIZE));
+        assertNull(Static.parseRanges("bytes=a-9", SIZE));
+        assertNull(Static.parseRanges("bytes=9-0", SIZE));
+        assertNull(Static.parseRanges("bytes=1-2-3", SIZE));
+        assertNull(Static.parseRanges("bytes=--5", SIZE));
+        assertNull(Static.parseRanges("bytes=0-9,x", SIZE));
+    }
+
+    @Test
+    public void testOtherUnits() {
+        assertNull(Static.parseRanges("items=0-9", SIZE));
+        assertNull(Static.parseRanges("0-9", SIZE));
+    }
+
+    @Test
+    public void testIfRange() {
+        final String etag = "\"100-1400000000000\"";
+        final String lastModified = "Tue, 13 May 2014 16:53:20 GMT";
+
+        assertTrue(Static.ifRange(null, etag, lastModified));
+        assertTrue(Static.ifRange(etag, etag, lastModified));
+        assertTrue(Static.ifRange(lastModified, etag, lastModified));
+        assertFalse(Static.ifRange("\"100-1300000000000\"", etag, lastModified));
+        assertFalse(Static.ifRange("\"100-1400000000000-gzip\"", etag, lastModified));
+        // encoded representations can only be validated by etag
+        assertFalse(Static.ifRange(lastModified, etag + "-gzip", null));
+    }
+}